@@ -3,16 +3,18 @@
 
 package org.terasology.module.inventory.components;
 
-import com.google.common.collect.Lists;
 import org.terasology.engine.entitySystem.Owns;
 import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.prefab.Prefab;
 import org.terasology.engine.network.Replicate;
 import org.terasology.engine.network.ReplicationCheck;
 import org.terasology.engine.world.block.ForceBlockActive;
+import org.terasology.engine.world.block.family.BlockFamily;
 import org.terasology.engine.world.block.items.AddToBlockBasedItem;
 import org.terasology.gestalt.entitysystem.component.Component;
 import org.terasology.reflection.metadata.FieldMetadata;
 
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -26,7 +28,50 @@ public final class InventoryComponent implements Component<InventoryComponent>,
 
     @Replicate
     @Owns
-    public List<EntityRef> itemSlots = Lists.newArrayList();
+    public List<EntityRef> itemSlots = new ItemSlotList();
+
+    /**
+     * Whether the server replicates changes to {@link #itemSlots} slot by slot, via
+     * {@link org.terasology.module.inventory.events.InventorySlotsDeltaEvent}s, instead of sending the whole list.
+     * The whole list is still sent to clients the inventory becomes relevant to, whenever slots are added or removed,
+     * and every so often to make up for any lost change.
+     */
+    public boolean replicateSlotDeltas = true;
+
+    /**
+     * Whether {@link #itemSlots} are only replicated to the owner and to clients that have the inventory open as their
+     * interaction target, via {@link org.terasology.module.inventory.events.ViewedInventorySlotsEvent}s. Other
+     * clients only get {@link #slotCount} and {@link #filledSlots}. Meant for containers that many players are close
+     * to but few open, such as those of storage halls.
+     */
+    public boolean replicateToViewers;
+
+    /**
+     * Whether the entity is sent an {@link org.terasology.module.inventory.events.InventorySlotsChangedEvent} for each
+     * inventory transaction that changed its slots, besides the events for the individual changes. Set it for
+     * inventories that have listeners for the batched event, so that the others do not pay for it.
+     */
+    public boolean sendSlotsChangedEvents;
+
+    /**
+     * The number of slots of an inventory that is {@link #replicateToViewers replicated to viewers}, kept up to date
+     * by the server.
+     */
+    @Replicate
+    public int slotCount;
+
+    /**
+     * The number of slots holding an item of an inventory that is {@link #replicateToViewers replicated to viewers},
+     * kept up to date by the server.
+     */
+    @Replicate
+    public int filledSlots;
+
+    /**
+     * Whether the next replication of {@link #itemSlots} has to send the whole list even though
+     * {@link #replicateSlotDeltas} is set. Only known to the server.
+     */
+    private transient boolean replicateAllSlots;
 
     public InventoryComponent() {
     }
@@ -37,14 +82,142 @@ public final class InventoryComponent implements Component<InventoryComponent>,
         }
     }
 
+    /**
+     * Find the slot holding the given item.
+     *
+     * @param item the item to look for
+     * @return the slot holding the item, or -1 if it isn't in this inventory
+     */
+    public int findSlot(EntityRef item) {
+        return slots().slotOf(item);
+    }
+
+    /**
+     * Find the slots holding an item of the given stack.
+     * <p>
+     * Items are grouped by the stack id they had when put into their slot, so callers must still check whether the
+     * item in a returned slot actually stacks with theirs.
+     *
+     * @param stackId the stack id to look for
+     * @param candidates the slots to consider, or null to consider all slots
+     * @return the candidate slots holding an item with the given stack id, in candidate order
+     */
+    public List<Integer> findSlotsWithStack(String stackId, List<Integer> candidates) {
+        return slots().slotsWithStack(stackId, candidates);
+    }
+
+    /**
+     * Find the slots holding an item created from the given prefab.
+     *
+     * @param prefab the parent prefab to look for
+     * @param candidates the slots to consider, or null to consider all slots
+     * @return the candidate slots holding an item with the given parent prefab, in candidate order
+     */
+    public List<Integer> findSlotsWithPrefab(Prefab prefab, List<Integer> candidates) {
+        return slots().slotsWithPrefab(prefab, candidates);
+    }
+
+    /**
+     * Find the slots holding a block item of the given block family.
+     *
+     * @param blockFamily the block family to look for
+     * @param candidates the slots to consider, or null to consider all slots
+     * @return the candidate slots holding a block item of the given family, in candidate order
+     */
+    public List<Integer> findSlotsWithBlockFamily(BlockFamily blockFamily, List<Integer> candidates) {
+        return slots().slotsWithBlockFamily(blockFamily, candidates);
+    }
+
+    /**
+     * Count the items created from the given prefab, without looking at the items that did not change since.
+     *
+     * @param prefab the parent prefab to look for
+     * @return the sum of the stack sizes of the items with the given parent prefab
+     */
+    public int countItemsWithPrefab(Prefab prefab) {
+        return slots().countWithPrefab(prefab);
+    }
+
+    /**
+     * Count the block items of the given block family, without looking at the items that did not change since.
+     *
+     * @param blockFamily the block family to look for
+     * @return the sum of the stack sizes of the block items of the given family
+     */
+    public int countItemsWithBlockFamily(BlockFamily blockFamily) {
+        return slots().countWithBlockFamily(blockFamily);
+    }
+
+    /**
+     * Look at the item in a slot anew, as its stack size or stack id changed without it being put into the slot again.
+     *
+     * @param slot the slot holding the changed item
+     */
+    public void refreshSlot(int slot) {
+        slots().refresh(slot);
+    }
+
+    /**
+     * Find the slots that do not hold an item.
+     *
+     * @param candidates the slots to consider, or null to consider all slots
+     * @return the empty candidate slots, in candidate order
+     */
+    public List<Integer> findEmptySlots(List<Integer> candidates) {
+        return slots().emptySlots(candidates);
+    }
+
+    /**
+     * Collect the slots that changed since the last call, and start over.
+     *
+     * @return the slots now holding a different item, or null if the changes cannot be described by slot
+     */
+    public BitSet drainChangedSlots() {
+        if (!(itemSlots instanceof ItemSlotList)) {
+            // the whole list has been replaced, so there is no telling what changed
+            slots();
+            return null;
+        }
+        return ((ItemSlotList) itemSlots).drainChangedSlots();
+    }
+
+    /**
+     * @param replicateAllSlots whether the next replication of this inventory has to send all slots
+     */
+    public void setReplicateAllSlots(boolean replicateAllSlots) {
+        this.replicateAllSlots = replicateAllSlots;
+    }
+
+    private ItemSlotList slots() {
+        // the field is public and may have been replaced with a plain list, e.g. by deserialization
+        if (!(itemSlots instanceof ItemSlotList)) {
+            itemSlots = new ItemSlotList(itemSlots);
+        }
+        return (ItemSlotList) itemSlots;
+    }
+
     @Override
     public boolean shouldReplicate(FieldMetadata<?, ?> field, boolean initial, boolean toOwner) {
-        return !privateToOwner || toOwner;
+        if (privateToOwner && !toOwner) {
+            return false;
+        }
+        if (!"itemSlots".equals(field.getName())) {
+            return true;
+        }
+        if (replicateToViewers && !toOwner) {
+            return false;
+        }
+        return initial || !replicateSlotDeltas || replicateAllSlots;
     }
 
     @Override
     public void copyFrom(InventoryComponent other) {
-        this.itemSlots = Lists.newArrayList(other.itemSlots);
+        this.itemSlots = new ItemSlotList(other.itemSlots);
         this.privateToOwner = other.privateToOwner;
+        this.replicateSlotDeltas = other.replicateSlotDeltas;
+        this.replicateToViewers = other.replicateToViewers;
+        this.sendSlotsChangedEvents = other.sendSlotsChangedEvents;
+        this.slotCount = other.slotCount;
+        this.filledSlots = other.filledSlots;
     }
 }
@@ -5,9 +5,6 @@ package org.terasology.module.inventory.components;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.terasology.engine.entitySystem.entity.EntityManager;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.entitySystem.prefab.Prefab;
 import org.terasology.engine.entitySystem.prefab.PrefabManager;
@@ -26,13 +23,14 @@ import org.terasology.engine.world.block.BlockManager;
 import org.terasology.engine.world.block.BlockUri;
 import org.terasology.engine.world.block.entity.BlockCommands;
 import org.terasology.engine.world.block.family.BlockFamily;
-import org.terasology.engine.world.block.items.BlockItemComponent;
 import org.terasology.engine.world.block.loader.BlockFamilyDefinition;
 import org.terasology.engine.world.block.shapes.BlockShape;
 import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.gestalt.assets.management.AssetManager;
 import org.terasology.module.inventory.systems.InventoryManager;
-import org.terasology.module.inventory.systems.InventoryUtils;
+import org.terasology.module.inventory.systems.InventoryMetrics;
+import org.terasology.module.inventory.systems.ItemUriResolver;
+import org.terasology.module.inventory.systems.OperationStats;
 
 import java.util.Collections;
 import java.util.List;
@@ -43,8 +41,6 @@ import java.util.Set;
 @Share(ItemCommands.class)
 public class ItemCommands extends BaseComponentSystem {
 
-    private static final Logger logger = LoggerFactory.getLogger(ItemCommands.class);
-
     @In
     private BlockCommands blockCommands;
 
@@ -52,10 +48,10 @@ public class ItemCommands extends BaseComponentSystem {
     private InventoryManager inventoryManager;
 
     @In
-    private EntityManager entityManager;
+    private AssetManager assetManager;
 
     @In
-    private AssetManager assetManager;
+    private ItemUriResolver itemUriResolver;
 
     @In
     private PrefabManager prefabManager;
@@ -63,6 +59,9 @@ public class ItemCommands extends BaseComponentSystem {
     @In
     private BlockManager blockManager;
 
+    @In
+    private InventoryMetrics inventoryMetrics;
+
     @Command(shortDescription = "Adds an item or block to your inventory",
             helpText = "Puts the desired number of the given item or block with the given shape into your inventory",
             runOnServer = true,
@@ -78,21 +77,14 @@ public class ItemCommands extends BaseComponentSystem {
             return "Requested zero (0) items / blocks!";
         }
 
-        Set<ResourceUrn> matches = assetManager.resolve(itemPrefabName, Prefab.class);
+        Set<ResourceUrn> matches = itemUriResolver.resolve(itemPrefabName, Prefab.class);
 
         if (matches.size() == 1) {
             Prefab prefab = assetManager.getAsset(matches.iterator().next(), Prefab.class).orElse(null);
             if (prefab != null && prefab.getComponent(ItemComponent.class) != null) {
                 EntityRef playerEntity = client.getComponent(ClientComponent.class).character;
 
-                for (int quantityLeft = itemAmount; quantityLeft > 0; quantityLeft--) {
-                    EntityRef item = entityManager.create(prefab);
-                    if (!inventoryManager.giveItem(playerEntity, playerEntity, item)) {
-                        item.destroy();
-                        itemAmount -= quantityLeft;
-                        break;
-                    }
-                }
+                itemAmount -= inventoryManager.giveItems(playerEntity, playerEntity, prefab, itemAmount, null);
 
                 return "You received "
                         + (itemAmount > 1 ? itemAmount + " items of " : "an item of ")
@@ -130,12 +122,12 @@ public class ItemCommands extends BaseComponentSystem {
         }
 
         // assume the object to remove is a block
-        Set<ResourceUrn> matchingUrns = assetManager.resolve(inventoryObjectUri, BlockFamilyDefinition.class);
-        final Set<ResourceUrn> matchingShapeUrns = (shapeUri == null ? null : assetManager.resolve(shapeUri, BlockShape.class));
+        Set<ResourceUrn> matchingUrns = itemUriResolver.resolve(inventoryObjectUri, BlockFamilyDefinition.class);
+        final Set<ResourceUrn> matchingShapeUrns = (shapeUri == null ? null : itemUriResolver.resolve(shapeUri, BlockShape.class));
         final boolean isBlock = !matchingUrns.isEmpty();
         if (!isBlock) {
             // assume the object to remove is an item
-            matchingUrns = assetManager.resolve(inventoryObjectUri, Prefab.class);
+            matchingUrns = itemUriResolver.resolve(inventoryObjectUri, Prefab.class);
         } else {
             // for blocks check shapeUri if applicable
             if (shapeUri != null) {
@@ -168,14 +160,14 @@ public class ItemCommands extends BaseComponentSystem {
 
                 if (blockFamily != null) {
                     displayName = blockFamily.getDisplayName();
-                    removedItems = removeBlock(blockFamily, displayName, removalQuantity, client);
+                    removedItems = removeBlock(blockFamily, removalQuantity, client);
                 }
 
             } else {
                 Prefab prefab = assetManager.getAsset(matchingUrns.iterator().next(), Prefab.class).orElse(null);
                 if (prefab != null && prefab.hasComponent(ItemComponent.class)) {
                     displayName = prefab.getName();
-                    removedItems = removeItem(prefab, displayName, removalQuantity, client);
+                    removedItems = removeItem(prefab, removalQuantity, client);
                 }
             }
         }
@@ -251,6 +243,40 @@ public class ItemCommands extends BaseComponentSystem {
         return result;
     }
 
+    @Command(shortDescription = "Shows statistics about inventory operations",
+            helpText = "Lists how often each inventory operation ran on the server, how often it was vetoed, its latency " +
+                    "and how many events and component saves it caused. Pass \"reset\" to start over.",
+            runOnServer = true, requiredPermission = PermissionManager.DEBUG_PERMISSION)
+    public String inventoryStats(@CommandParam(value = "reset", required = false) String reset) {
+        if (inventoryMetrics == null) {
+            return "Inventory statistics are only recorded on the server";
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-14s %8s %7s %10s %10s %10s %8s %8s",
+                "operation", "count", "vetoed", "mean us", "p99 us", "max us", "events", "saves"));
+        for (InventoryMetrics.Operation operation : InventoryMetrics.Operation.values()) {
+            OperationStats stats = inventoryMetrics.getStats(operation);
+            double count = Math.max(1, stats.getCount());
+            builder.append(Console.NEW_LINE);
+            builder.append(String.format("%-14s %8d %6.1f%% %10.1f %10.1f %10.1f %8.1f %8.1f",
+                    operation.name().toLowerCase(),
+                    stats.getCount(),
+                    stats.getVetoRate() * 100,
+                    stats.getMeanNanos() / 1000,
+                    stats.getPercentileNanos(99) / 1000.0,
+                    stats.getMaxNanos() / 1000.0,
+                    stats.getEventsSent() / count,
+                    stats.getComponentsSaved() / count));
+        }
+
+        if ("reset".equals(reset)) {
+            inventoryMetrics.reset();
+            builder.append(Console.NEW_LINE).append("Statistics have been reset");
+        }
+        return builder.toString();
+    }
+
     private String buildAmbiguousObjectIdString(String objectType, String objectUri, Set<ResourceUrn> possibleMatches) {
         StringBuilder builder = new StringBuilder();
         builder.append("Specified ");
@@ -263,79 +289,18 @@ public class ItemCommands extends BaseComponentSystem {
         return builder.toString();
     }
 
-    private int removeObjectFromSlot(EntityRef slot, EntityRef playerEntity, boolean isStackable, String displayName, int quantity) {
-        int quantityLeft = quantity;
-        EntityRef result = null;
-        if (isStackable) {
-            ItemComponent itemComponent = slot.getComponent(ItemComponent.class);
-            if (itemComponent != null) {
-                if (quantityLeft >= itemComponent.stackCount) {
-                    result = inventoryManager.removeItem(playerEntity, EntityRef.NULL, slot, true, itemComponent.stackCount);
-                    quantityLeft = quantityLeft - itemComponent.stackCount;
-                } else {
-                    result = inventoryManager.removeItem(playerEntity, EntityRef.NULL, slot, true, quantityLeft);
-                    quantityLeft = quantityLeft - quantityLeft;
-                }
-            }
-        } else {
-            result = inventoryManager.removeItem(playerEntity, EntityRef.NULL, slot, true, 1);
-            quantityLeft = quantityLeft - 1;
-        }
-
-        if (result == null) {
-            logger.debug("Could not remove \"{}\" from slot {}", displayName, slot.getId());
-        }
-
-        return quantityLeft;
-    }
-
-    private int removeItem(Prefab prefab, String displayName, final int removalQuantity, EntityRef client) {
+    private int removeItem(Prefab prefab, final int removalQuantity, EntityRef client) {
         EntityRef playerEntity = client.getComponent(ClientComponent.class).character;
-        List<EntityRef> inventorySlots = Lists.reverse(playerEntity.getComponent(InventoryComponent.class).itemSlots);
-        int quantityLeft = removalQuantity;
-
-        for (EntityRef slot : inventorySlots) {
-            Prefab slotPrefab = slot.getParentPrefab();
-
-            if (slotPrefab != null && slotPrefab.equals(prefab)) {
-                quantityLeft = removeObjectFromSlot(slot,
-                        playerEntity,
-                        InventoryUtils.isStackable(prefab),
-                        displayName,
-                        quantityLeft);
-
-                if (quantityLeft == 0) {
-                    break;
-                }
-            }
-        }
-
-        return removalQuantity - quantityLeft;
+        // remove as many as the player has, up to the requested quantity
+        int quantity = Math.min(removalQuantity, inventoryManager.countByPrefab(playerEntity, prefab));
+        return inventoryManager.removeByPrefab(playerEntity, EntityRef.NULL, prefab, quantity, true) != null ? quantity : 0;
     }
 
-    private int removeBlock(BlockFamily blockFamily, String displayName, final int removalQuantity, EntityRef client) {
+    private int removeBlock(BlockFamily blockFamily, final int removalQuantity, EntityRef client) {
         EntityRef playerEntity = client.getComponent(ClientComponent.class).character;
-        List<EntityRef> inventorySlots = Lists.reverse(playerEntity.getComponent(InventoryComponent.class).itemSlots);
-        int quantityLeft = removalQuantity;
-
-        for (EntityRef slot : inventorySlots) {
-            if (slot.hasComponent(BlockItemComponent.class)) {
-                BlockFamily slotBlockFamily = slot.getComponent(BlockItemComponent.class).blockFamily;
-
-                if (slotBlockFamily != null && slotBlockFamily.equals(blockFamily)) {
-                    quantityLeft = removeObjectFromSlot(slot,
-                            playerEntity,
-                            blockFamily.getArchetypeBlock().isStackable(),
-                            displayName,
-                            quantityLeft);
-
-                    if (quantityLeft == 0) {
-                        break;
-                    }
-                }
-            }
-        }
-
-        return removalQuantity - quantityLeft;
+        int quantity = Math.min(removalQuantity, inventoryManager.countByBlockFamily(playerEntity, blockFamily));
+        return inventoryManager.removeByBlockFamily(playerEntity, EntityRef.NULL, blockFamily, quantity, true) != null
+                ? quantity
+                : 0;
     }
 }
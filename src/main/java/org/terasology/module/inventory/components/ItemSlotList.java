@@ -0,0 +1,512 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.components;
+
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.prefab.Prefab;
+import org.terasology.engine.logic.inventory.ItemComponent;
+import org.terasology.engine.world.block.family.BlockFamily;
+import org.terasology.engine.world.block.items.BlockItemComponent;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * The list backing {@link InventoryComponent#itemSlots}.
+ * <p>
+ * Every write goes through {@link #set(int, EntityRef)}, {@link #add(int, EntityRef)} or {@link #remove(int)}, which
+ * keeps a reverse index from item to slot up to date. Looking up the slot of an item via {@link #slotOf(EntityRef)}
+ * therefore does not need to scan the inventory.
+ * <p>
+ * The list also groups slots by the stack id of their item and tracks which slots are empty, so that finding where an
+ * item can be merged into or put does not need to look at every slot. Likewise, slots are grouped by the prefab and
+ * the block family of their item, so that all items of a kind can be removed without a scan, and the stack sizes of
+ * each such group are summed up as slots are resolved, so that they can be counted without looking at a single item.
+ * As this needs the components of the items, changed slots are only resolved on the next such query; writing to the
+ * list never touches the items. Stack sizes are changed without writing to the list, so whoever changes the stack size
+ * of an item in a slot has to {@link #refresh(int)} the slot, as {@code InventoryTransaction} does.
+ * <p>
+ * The slots are stored in a plain array, which a copy of the list, e.g. made by {@link InventoryComponent#copyFrom},
+ * shares until either list is written to. The indexes are only built once they are queried, so copies that are only
+ * read by position, as most are, cost no more than the list object itself.
+ * <p>
+ * Finally, the list remembers which slots were written to, so that the server can replicate only those, see
+ * {@link #drainChangedSlots()}.
+ */
+public final class ItemSlotList extends AbstractList<EntityRef> implements RandomAccess {
+    private static final EntityRef[] NO_SLOTS = {};
+
+    private EntityRef[] slots;
+    private int size;
+
+    /**
+     * Whether {@link #slots} may be shared with a copy of this list, in which case it is copied before the next write.
+     */
+    private boolean shared;
+
+    /**
+     * Maps each item to the slot it is in. Only exact while {@link #indexed} is set, created by the first lookup.
+     */
+    private Map<EntityRef, Integer> slotIndex;
+
+    /**
+     * Whether {@link #slotIndex} reflects the slots. Cleared by changes that cannot be applied to the index
+     * incrementally, e.g. inserting in the middle of the list; the index is then rebuilt on the next lookup.
+     */
+    private boolean indexed;
+
+    /**
+     * The stack id of the item in each slot as of its last resolution, null if it has none.
+     * Only aligned with the slots while {@link #stacksIndexed} is set. Like the other stack indexes, it is created by the
+     * first query.
+     */
+    private List<String> slotStacks;
+    private Map<String, BitSet> stackSlots;
+
+    /**
+     * The parent prefab and the block family of the item in each slot, kept like {@link #slotStacks}.
+     */
+    private List<Prefab> slotPrefabs;
+    private Map<Prefab, BitSet> prefabSlots;
+    private List<BlockFamily> slotFamilies;
+    private Map<BlockFamily, BitSet> familySlots;
+
+    /**
+     * The stack size of the item in each slot as of its last resolution, and their sums per prefab and block family.
+     */
+    private List<Integer> slotCounts;
+    private Map<Prefab, Integer> prefabCounts;
+    private Map<BlockFamily, Integer> familyCounts;
+    private BitSet emptySlots;
+    private BitSet unresolvedSlots;
+    private boolean stacksIndexed;
+
+    /**
+     * The slots written to since {@link #drainChangedSlots()} was last called, created by the first write.
+     */
+    private BitSet changedSlots;
+
+    /**
+     * Whether slots were added or removed since {@link #drainChangedSlots()} was last called.
+     */
+    private boolean resized;
+
+    public ItemSlotList() {
+        this.slots = NO_SLOTS;
+    }
+
+    public ItemSlotList(Collection<EntityRef> items) {
+        if (items instanceof ItemSlotList) {
+            ItemSlotList other = (ItemSlotList) items;
+            this.slots = other.slots;
+            this.shared = true;
+            other.shared = true;
+        } else {
+            this.slots = items.toArray(NO_SLOTS);
+        }
+        this.size = items.size();
+    }
+
+    /**
+     * Find the slot holding the given item.
+     * <p>
+     * Items are compared by identity, matching how inventories have always been searched.
+     *
+     * @param item the item to look for
+     * @return the slot holding the item, or -1 if it isn't in this list
+     */
+    public int slotOf(EntityRef item) {
+        if (item == EntityRef.NULL || !indexed && !rebuildIndex()) {
+            // empty slots are not indexed, and neither is an item that is in several slots
+            return scan(item);
+        }
+        Integer slot = slotIndex.get(item);
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * Find the slots holding an item of the given stack.
+     * <p>
+     * The result is based on the stack id items had when they were put into their slot. Callers must still check
+     * whether the item in a returned slot actually stacks with theirs.
+     *
+     * @param stackId the stack id to look for
+     * @param candidates the slots to consider, or null to consider all slots
+     * @return the candidate slots holding an item with the given stack id, in candidate order
+     */
+    public List<Integer> slotsWithStack(String stackId, List<Integer> candidates) {
+        if (stackId == null || stackId.isEmpty()) {
+            return new ArrayList<>();
+        }
+        resolveStacks();
+        BitSet matches = stackSlots.get(stackId);
+        if (matches == null) {
+            return new ArrayList<>();
+        }
+        return filter(matches, candidates);
+    }
+
+    /**
+     * Find the slots holding an item created from the given prefab.
+     *
+     * @param prefab the parent prefab to look for
+     * @param candidates the slots to consider, or null to consider all slots
+     * @return the candidate slots holding an item with the given parent prefab, in candidate order
+     */
+    public List<Integer> slotsWithPrefab(Prefab prefab, List<Integer> candidates) {
+        resolveStacks();
+        BitSet matches = prefabSlots.get(prefab);
+        return matches != null ? filter(matches, candidates) : new ArrayList<>();
+    }
+
+    /**
+     * Find the slots holding a block item of the given block family.
+     *
+     * @param blockFamily the block family to look for
+     * @param candidates the slots to consider, or null to consider all slots
+     * @return the candidate slots holding a block item of the given family, in candidate order
+     */
+    public List<Integer> slotsWithBlockFamily(BlockFamily blockFamily, List<Integer> candidates) {
+        resolveStacks();
+        BitSet matches = familySlots.get(blockFamily);
+        return matches != null ? filter(matches, candidates) : new ArrayList<>();
+    }
+
+    /**
+     * Count the items created from the given prefab.
+     *
+     * @param prefab the parent prefab to look for
+     * @return the sum of the stack sizes of the items with the given parent prefab
+     */
+    public int countWithPrefab(Prefab prefab) {
+        resolveStacks();
+        return prefabCounts.getOrDefault(prefab, 0);
+    }
+
+    /**
+     * Count the block items of the given block family.
+     *
+     * @param blockFamily the block family to look for
+     * @return the sum of the stack sizes of the block items of the given family
+     */
+    public int countWithBlockFamily(BlockFamily blockFamily) {
+        resolveStacks();
+        return familyCounts.getOrDefault(blockFamily, 0);
+    }
+
+    /**
+     * Resolve the item in a slot anew on the next query, e.g. because its stack size changed.
+     *
+     * @param slot the slot to resolve anew
+     */
+    public void refresh(int slot) {
+        checkIndex(slot, size);
+        if (stacksIndexed) {
+            unresolve(slot);
+        }
+    }
+
+    /**
+     * Find the slots not holding an item, i.e. an entity without {@link ItemComponent}.
+     *
+     * @param candidates the slots to consider, or null to consider all slots
+     * @return the empty candidate slots, in candidate order
+     */
+    public List<Integer> emptySlots(List<Integer> candidates) {
+        resolveStacks();
+        return filter(emptySlots, candidates);
+    }
+
+    /**
+     * Collect the slots written to since the last call, and start over.
+     *
+     * @return the slots now holding a different item, or null if slots were added or removed in the meantime, so the
+     *         changes cannot be described by slot
+     */
+    public BitSet drainChangedSlots() {
+        BitSet changed = resized ? null : changedSlots != null ? (BitSet) changedSlots.clone() : new BitSet();
+        if (changedSlots != null) {
+            changedSlots.clear();
+        }
+        resized = false;
+        return changed;
+    }
+
+    private List<Integer> filter(BitSet matches, List<Integer> candidates) {
+        List<Integer> result = new ArrayList<>();
+        if (candidates == null) {
+            for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+                result.add(slot);
+            }
+        } else {
+            for (int slot : candidates) {
+                if (slot >= 0 && matches.get(slot)) {
+                    result.add(slot);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void resolveStacks() {
+        if (!stacksIndexed) {
+            if (slotStacks == null) {
+                slotStacks = new ArrayList<>();
+                stackSlots = new HashMap<>();
+                slotPrefabs = new ArrayList<>();
+                prefabSlots = new HashMap<>();
+                slotFamilies = new ArrayList<>();
+                familySlots = new HashMap<>();
+                slotCounts = new ArrayList<>();
+                prefabCounts = new HashMap<>();
+                familyCounts = new HashMap<>();
+                emptySlots = new BitSet();
+                unresolvedSlots = new BitSet();
+            }
+            slotStacks.clear();
+            stackSlots.clear();
+            slotPrefabs.clear();
+            prefabSlots.clear();
+            slotFamilies.clear();
+            familySlots.clear();
+            slotCounts.clear();
+            prefabCounts.clear();
+            familyCounts.clear();
+            emptySlots.clear();
+            for (int i = 0; i < size; i++) {
+                slotStacks.add(null);
+                slotPrefabs.add(null);
+                slotFamilies.add(null);
+                slotCounts.add(0);
+            }
+            unresolvedSlots.set(0, size);
+            stacksIndexed = true;
+        }
+        for (int slot = unresolvedSlots.nextSetBit(0); slot >= 0; slot = unresolvedSlots.nextSetBit(slot + 1)) {
+            EntityRef itemEntity = slots[slot];
+            ItemComponent item = itemEntity.getComponent(ItemComponent.class);
+            if (item == null) {
+                emptySlots.set(slot);
+                continue;
+            }
+            if (item.stackId != null && !item.stackId.isEmpty()) {
+                addToGroup(slotStacks, stackSlots, item.stackId, slot);
+            }
+            slotCounts.set(slot, (int) item.stackCount);
+            Prefab prefab = itemEntity.getParentPrefab();
+            if (prefab != null) {
+                addToGroup(slotPrefabs, prefabSlots, prefab, slot);
+                prefabCounts.merge(prefab, (int) item.stackCount, Integer::sum);
+            }
+            BlockItemComponent blockItem = itemEntity.getComponent(BlockItemComponent.class);
+            if (blockItem != null && blockItem.blockFamily != null) {
+                addToGroup(slotFamilies, familySlots, blockItem.blockFamily, slot);
+                familyCounts.merge(blockItem.blockFamily, (int) item.stackCount, Integer::sum);
+            }
+        }
+        unresolvedSlots.clear();
+    }
+
+    private void unresolve(int slot) {
+        int count = slotCounts.set(slot, 0);
+        subtractCount(prefabCounts, slotPrefabs.get(slot), count);
+        subtractCount(familyCounts, slotFamilies.get(slot), count);
+        removeFromGroup(slotStacks, stackSlots, slot);
+        removeFromGroup(slotPrefabs, prefabSlots, slot);
+        removeFromGroup(slotFamilies, familySlots, slot);
+        emptySlots.clear(slot);
+        unresolvedSlots.set(slot);
+    }
+
+    private static <K> void addToGroup(List<K> slotKeys, Map<K, BitSet> groups, K key, int slot) {
+        slotKeys.set(slot, key);
+        groups.computeIfAbsent(key, k -> new BitSet()).set(slot);
+    }
+
+    private static <K> void subtractCount(Map<K, Integer> counts, K key, int count) {
+        if (key != null) {
+            int left = counts.get(key) - count;
+            if (left == 0) {
+                counts.remove(key);
+            } else {
+                counts.put(key, left);
+            }
+        }
+    }
+
+    private static <K> void removeFromGroup(List<K> slotKeys, Map<K, BitSet> groups, int slot) {
+        K key = slotKeys.set(slot, null);
+        if (key != null) {
+            BitSet group = groups.get(key);
+            group.clear(slot);
+            if (group.isEmpty()) {
+                groups.remove(key);
+            }
+        }
+    }
+
+    private int scan(EntityRef item) {
+        for (int i = 0; i < size; i++) {
+            if (slots[i] == item) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public EntityRef get(int index) {
+        checkIndex(index, size);
+        return slots[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public EntityRef set(int index, EntityRef item) {
+        checkIndex(index, size);
+        ensureWritable();
+        EntityRef oldItem = slots[index];
+        slots[index] = item;
+        if (indexed && oldItem != item) {
+            if (oldItem != EntityRef.NULL) {
+                slotIndex.remove(oldItem);
+            }
+            addToIndex(item, index);
+        }
+        if (stacksIndexed) {
+            unresolve(index);
+        }
+        if (oldItem != item) {
+            if (changedSlots == null) {
+                changedSlots = new BitSet();
+            }
+            changedSlots.set(index);
+        }
+        return oldItem;
+    }
+
+    @Override
+    public void add(int index, EntityRef item) {
+        checkIndex(index, size + 1);
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(size + (size >> 1), 10));
+            shared = false;
+        } else {
+            ensureWritable();
+        }
+        System.arraycopy(slots, index, slots, index + 1, size - index);
+        slots[index] = item;
+        size++;
+        modCount++;
+        resized = true;
+        if (index == size - 1) {
+            if (indexed) {
+                addToIndex(item, index);
+            }
+            if (stacksIndexed) {
+                slotStacks.add(null);
+                slotPrefabs.add(null);
+                slotFamilies.add(null);
+                slotCounts.add(0);
+                unresolvedSlots.set(index);
+            }
+        } else {
+            indexed = false;
+            stacksIndexed = false;
+        }
+    }
+
+    @Override
+    public EntityRef remove(int index) {
+        checkIndex(index, size);
+        ensureWritable();
+        EntityRef oldItem = slots[index];
+        System.arraycopy(slots, index + 1, slots, index, size - index - 1);
+        slots[--size] = null;
+        modCount++;
+        resized = true;
+        if (index == size) {
+            if (indexed && oldItem != EntityRef.NULL) {
+                slotIndex.remove(oldItem);
+            }
+            if (stacksIndexed) {
+                unresolve(index);
+                slotStacks.remove(index);
+                slotPrefabs.remove(index);
+                slotFamilies.remove(index);
+                slotCounts.remove(index);
+                unresolvedSlots.clear(index);
+            }
+        } else {
+            indexed = false;
+            stacksIndexed = false;
+        }
+        return oldItem;
+    }
+
+    @Override
+    public void clear() {
+        if (shared) {
+            slots = NO_SLOTS;
+            shared = false;
+        } else {
+            Arrays.fill(slots, 0, size, null);
+        }
+        size = 0;
+        modCount++;
+        resized = true;
+        indexed = false;
+        stacksIndexed = false;
+    }
+
+    private void ensureWritable() {
+        if (shared) {
+            slots = Arrays.copyOf(slots, slots.length);
+            shared = false;
+        }
+    }
+
+    private void addToIndex(EntityRef item, int slot) {
+        if (item != EntityRef.NULL && slotIndex.put(item, slot) != null) {
+            // the item is in more than one slot, which the index cannot represent
+            indexed = false;
+        }
+    }
+
+    /**
+     * @return true if the index could be rebuilt, false if an item is in more than one slot
+     */
+    private boolean rebuildIndex() {
+        if (slotIndex == null) {
+            slotIndex = new IdentityHashMap<>();
+        }
+        slotIndex.clear();
+        for (int i = 0; i < size; i++) {
+            EntityRef item = slots[i];
+            if (item != EntityRef.NULL && slotIndex.put(item, i) != null) {
+                return false;
+            }
+        }
+        indexed = true;
+        return true;
+    }
+
+    private static void checkIndex(int index, int length) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+    }
+}
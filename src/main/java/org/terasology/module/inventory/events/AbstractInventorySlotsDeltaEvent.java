@@ -0,0 +1,54 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.events;
+
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.gestalt.entitysystem.event.Event;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Replicates the slots of an inventory that changed, instead of the whole
+ * {@link org.terasology.module.inventory.components.InventoryComponent#itemSlots} list.
+ */
+public abstract class AbstractInventorySlotsDeltaEvent implements Event {
+    private int slotCount;
+    private List<Integer> slots = new ArrayList<>();
+    private List<EntityRef> items = new ArrayList<>();
+
+    protected AbstractInventorySlotsDeltaEvent() {
+    }
+
+    /**
+     * @param itemSlots the slots of the inventory after the change
+     * @param changedSlots the slots to replicate
+     */
+    protected AbstractInventorySlotsDeltaEvent(List<EntityRef> itemSlots, BitSet changedSlots) {
+        this.slotCount = itemSlots.size();
+        for (int slot = changedSlots.nextSetBit(0); slot >= 0; slot = changedSlots.nextSetBit(slot + 1)) {
+            slots.add(slot);
+            items.add(itemSlots.get(slot));
+        }
+    }
+
+    /**
+     * @return the number of slots of the inventory, which the receiver has to match for the change to apply
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    public List<Integer> getSlots() {
+        return slots;
+    }
+
+    /**
+     * @return the items now in the changed slots, in the order of {@link #getSlots()}
+     */
+    public List<EntityRef> getItems() {
+        return items;
+    }
+}
@@ -0,0 +1,125 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.events;
+
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.network.ServerEvent;
+import org.terasology.gestalt.entitysystem.event.Event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Carries several move requests of one client to the server at once, to be applied in order and acknowledged with a
+ * single {@link InventoryChangeAcknowledgedRequest} covering all of their change ids.
+ * <p>
+ * The moves are stored as parallel lists of plain values, as the network layer cannot serialize a list of the
+ * different {@link AbstractMoveItemRequest} subclasses. The target slots of all {@link MoveItemToSlotsRequest}s are
+ * concatenated into one list.
+ */
+@ServerEvent
+public class BatchedInventoryRequest implements Event {
+    private static final int SWITCH = 0;
+    private static final int MOVE_AMOUNT = 1;
+    private static final int MOVE_TO_SLOTS = 2;
+
+    private EntityRef instigator = EntityRef.NULL;
+    private List<Integer> kinds = new ArrayList<>();
+    private List<Integer> changeIds = new ArrayList<>();
+    private List<EntityRef> fromInventories = new ArrayList<>();
+    private List<Integer> fromSlots = new ArrayList<>();
+    private List<EntityRef> toInventories = new ArrayList<>();
+    /**
+     * The target slot of a switch or amount move, the number of target slots of a move to slots.
+     */
+    private List<Integer> toSlots = new ArrayList<>();
+    private List<Integer> amounts = new ArrayList<>();
+    private List<Integer> targetSlots = new ArrayList<>();
+
+    protected BatchedInventoryRequest() {
+    }
+
+    /**
+     * @param moves the moves to send, in the order they are to be applied
+     */
+    public BatchedInventoryRequest(List<AbstractMoveItemRequest> moves) {
+        for (AbstractMoveItemRequest move : moves) {
+            add(move);
+        }
+    }
+
+    private void add(AbstractMoveItemRequest move) {
+        instigator = move.getInstigator();
+        changeIds.add(move.getChangeId());
+        fromInventories.add(move.getFromInventory());
+        fromSlots.add(move.getFromSlot());
+        toInventories.add(move.getToInventory());
+        if (move instanceof MoveItemRequest) {
+            kinds.add(SWITCH);
+            toSlots.add(((MoveItemRequest) move).getToSlot());
+            amounts.add(0);
+        } else if (move instanceof MoveItemAmountRequest) {
+            kinds.add(MOVE_AMOUNT);
+            toSlots.add(((MoveItemAmountRequest) move).getToSlot());
+            amounts.add(((MoveItemAmountRequest) move).getAmount());
+        } else if (move instanceof MoveItemToSlotsRequest) {
+            List<Integer> slots = ((MoveItemToSlotsRequest) move).getToSlots();
+            kinds.add(MOVE_TO_SLOTS);
+            toSlots.add(slots.size());
+            amounts.add(0);
+            targetSlots.addAll(slots);
+        } else {
+            throw new IllegalArgumentException("Unsupported move request " + move.getClass().getSimpleName());
+        }
+    }
+
+    public EntityRef getInstigator() {
+        return instigator;
+    }
+
+    /**
+     * @return the lowest change id of the moves in this batch
+     */
+    public int getFirstChangeId() {
+        return changeIds.isEmpty() ? -1 : Collections.min(changeIds);
+    }
+
+    /**
+     * @return the highest change id of the moves in this batch
+     */
+    public int getLastChangeId() {
+        return changeIds.isEmpty() ? -1 : Collections.max(changeIds);
+    }
+
+    /**
+     * @return the moves of this batch, in the order they are to be applied
+     */
+    public List<AbstractMoveItemRequest> getMoves() {
+        List<AbstractMoveItemRequest> moves = new ArrayList<>(kinds.size());
+        int targetSlotIndex = 0;
+        for (int i = 0; i < kinds.size(); i++) {
+            switch (kinds.get(i)) {
+                case SWITCH:
+                    moves.add(new MoveItemRequest(instigator, fromInventories.get(i), fromSlots.get(i),
+                            toInventories.get(i), toSlots.get(i), changeIds.get(i), null));
+                    break;
+                case MOVE_AMOUNT:
+                    moves.add(new MoveItemAmountRequest(instigator, fromInventories.get(i), fromSlots.get(i),
+                            toInventories.get(i), toSlots.get(i), amounts.get(i), changeIds.get(i), null));
+                    break;
+                case MOVE_TO_SLOTS:
+                    int slotCount = toSlots.get(i);
+                    List<Integer> slots = new ArrayList<>(targetSlots.subList(targetSlotIndex, targetSlotIndex + slotCount));
+                    targetSlotIndex += slotCount;
+                    moves.add(new MoveItemToSlotsRequest(instigator, fromInventories.get(i), fromSlots.get(i),
+                            toInventories.get(i), slots, changeIds.get(i), null));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown move kind " + kinds.get(i));
+            }
+        }
+        return moves;
+    }
+}
@@ -13,15 +13,35 @@ import org.terasology.engine.network.OwnerEvent;
  */
 @OwnerEvent
 public class InventoryChangeAcknowledgedRequest extends NetworkEvent {
+    private int firstChangeId;
     private int changeId;
 
     protected InventoryChangeAcknowledgedRequest() {
     }
 
     public InventoryChangeAcknowledgedRequest(int changeId) {
+        this(changeId, changeId);
+    }
+
+    /**
+     * Acknowledge all changes with an id from {@code firstChangeId} to {@code changeId}, e.g. those of a
+     * {@link BatchedInventoryRequest}.
+     */
+    public InventoryChangeAcknowledgedRequest(int firstChangeId, int changeId) {
+        this.firstChangeId = firstChangeId;
         this.changeId = changeId;
     }
 
+    /**
+     * @return the lowest acknowledged change id; the same as {@link #getChangeId()} unless a batch is acknowledged
+     */
+    public int getFirstChangeId() {
+        return firstChangeId;
+    }
+
+    /**
+     * @return the highest acknowledged change id
+     */
     public int getChangeId() {
         return changeId;
     }
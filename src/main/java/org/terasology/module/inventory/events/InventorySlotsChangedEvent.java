@@ -0,0 +1,68 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.module.inventory.events;
+
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.gestalt.entitysystem.event.Event;
+
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * Sent once per inventory when an inventory transaction is committed, describing the net effect of the transaction on
+ * the slots of that inventory. Only sent to inventories that ask for it by setting
+ * {@link org.terasology.module.inventory.components.InventoryComponent#sendSlotsChangedEvents}.
+ * <p>
+ * It is sent after the {@link InventorySlotChangedEvent}s and {@link InventorySlotStackSizeChangedEvent}s for the
+ * individual changes. Subscribers that only care about the final state of the slots can listen to this event instead
+ * of reacting to every single change.
+ */
+public class InventorySlotsChangedEvent implements Event {
+    private BitSet changedSlots;
+    private Map<Integer, EntityRef> oldItems;
+    private Map<Integer, EntityRef> newItems;
+
+    /**
+     * @param changedSlots the slots whose item or stack size changed
+     * @param oldItems the item each changed slot held before the transaction
+     * @param newItems the item each changed slot holds after the transaction
+     */
+    public InventorySlotsChangedEvent(BitSet changedSlots, Map<Integer, EntityRef> oldItems, Map<Integer, EntityRef> newItems) {
+        this.changedSlots = changedSlots;
+        this.oldItems = oldItems;
+        this.newItems = newItems;
+    }
+
+    /**
+     * @return the slots whose item or stack size changed
+     */
+    public BitSet getChangedSlots() {
+        return (BitSet) changedSlots.clone();
+    }
+
+    public boolean isChanged(int slot) {
+        return slot >= 0 && changedSlots.get(slot);
+    }
+
+    /**
+     * @return whether the slot holds a different item than before, as opposed to the same item with a different stack
+     *         size or no change at all
+     */
+    public boolean isItemChanged(int slot) {
+        return isChanged(slot) && !getOldItem(slot).equals(getNewItem(slot));
+    }
+
+    /**
+     * @return the item the slot held before the transaction, or {@link EntityRef#NULL} if the slot did not change
+     */
+    public EntityRef getOldItem(int slot) {
+        return oldItems.getOrDefault(slot, EntityRef.NULL);
+    }
+
+    /**
+     * @return the item the slot holds after the transaction, or {@link EntityRef#NULL} if the slot did not change
+     */
+    public EntityRef getNewItem(int slot) {
+        return newItems.getOrDefault(slot, EntityRef.NULL);
+    }
+}
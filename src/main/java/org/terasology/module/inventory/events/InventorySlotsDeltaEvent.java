@@ -0,0 +1,23 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.events;
+
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.network.BroadcastEvent;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Replicates changed slots of an inventory that is visible to all clients.
+ */
+@BroadcastEvent
+public class InventorySlotsDeltaEvent extends AbstractInventorySlotsDeltaEvent {
+    protected InventorySlotsDeltaEvent() {
+    }
+
+    public InventorySlotsDeltaEvent(List<EntityRef> itemSlots, BitSet changedSlots) {
+        super(itemSlots, changedSlots);
+    }
+}
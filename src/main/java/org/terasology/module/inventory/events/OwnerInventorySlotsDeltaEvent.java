@@ -0,0 +1,23 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.events;
+
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.network.OwnerEvent;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Replicates changed slots of an inventory that is private to its owner.
+ */
+@OwnerEvent
+public class OwnerInventorySlotsDeltaEvent extends AbstractInventorySlotsDeltaEvent {
+    protected OwnerInventorySlotsDeltaEvent() {
+    }
+
+    public OwnerInventorySlotsDeltaEvent(List<EntityRef> itemSlots, BitSet changedSlots) {
+        super(itemSlots, changedSlots);
+    }
+}
@@ -0,0 +1,43 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.events;
+
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.network.OwnerEvent;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Replicates slots of an inventory that is only replicated to the clients viewing it to one of them. Sent to the
+ * client entity, as the inventory belongs to someone else.
+ */
+@OwnerEvent
+public class ViewedInventorySlotsEvent extends AbstractInventorySlotsDeltaEvent {
+    private EntityRef inventory = EntityRef.NULL;
+
+    protected ViewedInventorySlotsEvent() {
+    }
+
+    /**
+     * @param inventory the entity holding the inventory
+     * @param itemSlots the slots of the inventory after the change
+     * @param changedSlots the slots to replicate
+     */
+    public ViewedInventorySlotsEvent(EntityRef inventory, List<EntityRef> itemSlots, BitSet changedSlots) {
+        super(itemSlots, changedSlots);
+        this.inventory = inventory;
+    }
+
+    public EntityRef getInventory() {
+        return inventory;
+    }
+
+    /**
+     * @return whether the event holds every slot of the inventory
+     */
+    public boolean isComplete() {
+        return getSlots().size() == getSlotCount();
+    }
+}
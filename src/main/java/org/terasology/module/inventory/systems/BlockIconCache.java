@@ -0,0 +1,108 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.systems;
+
+import org.joml.Vector2f;
+import org.joml.Vector2fc;
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterMode;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.registry.CoreRegistry;
+import org.terasology.engine.registry.Share;
+import org.terasology.engine.rendering.assets.texture.BasicTextureRegion;
+import org.terasology.engine.rendering.assets.texture.Texture;
+import org.terasology.engine.rendering.assets.texture.TextureRegion;
+import org.terasology.engine.utilities.Assets;
+import org.terasology.engine.world.block.BlockPart;
+import org.terasology.engine.world.block.family.BlockFamily;
+import org.terasology.engine.world.block.tiles.WorldAtlas;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Remembers the icon block items of each block family are drawn with in the inventory, so that they are drawn as a
+ * texture rather than as a mesh every frame.
+ * <p>
+ * The icon of a family is the region of the front of its archetype block in the terrain texture atlas, which already
+ * holds every block texture. It is looked up once per family. An icon whose texture has been disposed of, e.g.
+ * because the assets were reloaded, is looked up anew, and the cache is dropped as a whole when the system shuts down,
+ * which it does whenever the block families are created anew. Families without an icon, e.g. while there is no world
+ * atlas, are asked again every time, so that callers can fall back to drawing the mesh.
+ */
+@RegisterSystem(RegisterMode.CLIENT)
+@Share(BlockIconCache.class)
+public class BlockIconCache extends BaseComponentSystem {
+    private final Function<BlockFamily, TextureRegion> iconFactory;
+    private final Map<BlockFamily, TextureRegion> icons = new HashMap<>();
+    private int hits;
+    private int misses;
+
+    public BlockIconCache() {
+        this(BlockIconCache::createIcon);
+    }
+
+    BlockIconCache(Function<BlockFamily, TextureRegion> iconFactory) {
+        this.iconFactory = iconFactory;
+    }
+
+    /**
+     * @param blockFamily the block family to get the icon of
+     * @return the icon of the family, or null if it has none and has to be drawn as mesh
+     */
+    public TextureRegion getIcon(BlockFamily blockFamily) {
+        TextureRegion icon = icons.get(blockFamily);
+        if (icon != null && !icon.getTexture().isDisposed()) {
+            hits++;
+            return icon;
+        }
+        misses++;
+        icon = iconFactory.apply(blockFamily);
+        if (icon != null) {
+            icons.put(blockFamily, icon);
+        } else {
+            icons.remove(blockFamily);
+        }
+        return icon;
+    }
+
+    /**
+     * @return how often an icon was found in the cache
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return how often an icon had to be looked up
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Forget all icons.
+     */
+    public void clear() {
+        icons.clear();
+    }
+
+    @Override
+    public void shutdown() {
+        clear();
+    }
+
+    private static TextureRegion createIcon(BlockFamily blockFamily) {
+        WorldAtlas worldAtlas = CoreRegistry.get(WorldAtlas.class);
+        Optional<Texture> terrain = Assets.getTexture("engine:terrain");
+        if (worldAtlas == null || !terrain.isPresent()) {
+            return null;
+        }
+        Vector2fc position = blockFamily.getArchetypeBlock().getPrimaryAppearance().getTextureAtlasPos(BlockPart.FRONT);
+        float tileSize = worldAtlas.getRelativeTileSize();
+        return new BasicTextureRegion(terrain.get(), position, new Vector2f(tileSize, tileSize));
+    }
+}
@@ -24,6 +24,9 @@ import org.terasology.module.inventory.components.DropBlockInventoryComponent;
 import org.terasology.module.inventory.components.InventoryComponent;
 import org.terasology.module.inventory.components.RetainBlockInventoryComponent;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @RegisterSystem(RegisterMode.AUTHORITY)
 public class BlockInventorySystem extends BaseComponentSystem {
 
@@ -37,8 +40,11 @@ public class BlockInventorySystem extends BaseComponentSystem {
         EntityRef inventoryItem = event.getItem();
         int slotCount = InventoryUtils.getSlotCount(blockEntity);
         inventoryItem.addComponent(new InventoryComponent(slotCount));
-        for (int i = 0; i < slotCount; i++) {
-            inventoryManager.switchItem(blockEntity, blockEntity, i, inventoryItem, i);
+        try (InventoryTransaction transaction = inventoryManager.beginTransaction()) {
+            for (int i = 0; i < slotCount; i++) {
+                inventoryManager.switchItem(blockEntity, blockEntity, i, inventoryItem, i);
+            }
+            transaction.commit();
         }
         ItemComponent itemComponent = inventoryItem.getComponent(ItemComponent.class);
         if (InventoryUtils.isStackable(itemComponent)) {
@@ -50,8 +56,11 @@ public class BlockInventorySystem extends BaseComponentSystem {
     @ReceiveEvent(components = {InventoryComponent.class, BlockItemComponent.class})
     public void onPlaced(OnBlockItemPlaced event, EntityRef itemEntity) {
         int slotCount = InventoryUtils.getSlotCount(itemEntity);
-        for (int i = 0; i < slotCount; i++) {
-            inventoryManager.switchItem(event.getPlacedBlock(), itemEntity, i, itemEntity, i);
+        try (InventoryTransaction transaction = inventoryManager.beginTransaction()) {
+            for (int i = 0; i < slotCount; i++) {
+                inventoryManager.switchItem(event.getPlacedBlock(), itemEntity, i, itemEntity, i);
+            }
+            transaction.commit();
         }
     }
 
@@ -59,15 +68,23 @@ public class BlockInventorySystem extends BaseComponentSystem {
     public void dropContentsOfInventory(DoDestroyEvent event, EntityRef entity, LocationComponent location) {
         Vector3f position = location.getWorldPosition(new Vector3f());
 
-        FastRandom random = new FastRandom();
-        int slotCount = InventoryUtils.getSlotCount(entity);
-        for (int i = 0; i < slotCount; i++) {
-            EntityRef itemInSlot = InventoryUtils.getItemAt(entity, i);
-            if (itemInSlot.exists()) {
-                inventoryManager.removeItem(entity, entity, itemInSlot, false);
-                itemInSlot.send(new DropItemEvent(position));
-                itemInSlot.send(new ImpulseEvent(random.nextVector3f(30.0f, new Vector3f())));
+        List<EntityRef> removedItems = new ArrayList<>();
+        try (InventoryTransaction transaction = inventoryManager.beginTransaction()) {
+            int slotCount = InventoryUtils.getSlotCount(entity);
+            for (int i = 0; i < slotCount; i++) {
+                EntityRef itemInSlot = InventoryUtils.getItemAt(entity, i);
+                if (itemInSlot.exists()) {
+                    inventoryManager.removeItem(entity, entity, itemInSlot, false);
+                    removedItems.add(itemInSlot);
+                }
             }
+            transaction.commit();
+        }
+
+        FastRandom random = new FastRandom();
+        for (EntityRef item : removedItems) {
+            item.send(new DropItemEvent(position));
+            item.send(new ImpulseEvent(random.nextVector3f(30.0f, new Vector3f())));
         }
     }
 }
@@ -8,6 +8,7 @@ import org.terasology.engine.audio.events.PlaySoundForOwnerEvent;
 import org.terasology.engine.core.Time;
 import org.terasology.engine.entitySystem.entity.EntityManager;
 import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.OnActivatedComponent;
 import org.terasology.engine.entitySystem.entity.lifecycleEvents.OnAddedComponent;
 import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.entitySystem.systems.NetFilterEvent;
@@ -35,7 +36,7 @@ import org.terasology.module.inventory.components.InventoryComponent;
 import org.terasology.module.inventory.components.SelectedInventorySlotComponent;
 import org.terasology.module.inventory.events.ChangeSelectedInventorySlotRequest;
 import org.terasology.module.inventory.events.DropItemRequest;
-import org.terasology.module.inventory.events.InventorySlotChangedEvent;
+import org.terasology.module.inventory.events.InventorySlotsChangedEvent;
 import org.terasology.module.inventory.input.DropItemButton;
 import org.terasology.module.inventory.input.ToolbarNextButton;
 import org.terasology.module.inventory.input.ToolbarPrevButton;
@@ -77,12 +78,25 @@ public class CharacterInventorySystem extends BaseComponentSystem {
         entityRef.saveComponent(characterComponent);
     }
 
+    /**
+     * Ask for the batched slot events {@link #syncSelectedSlotWithHeldItem} listens to.
+     */
     @NetFilterEvent(netFilter = RegisterMode.AUTHORITY)
     @ReceiveEvent
-    public void syncSelectedSlotWithHeldItem(InventorySlotChangedEvent event, EntityRef entityRef,
+    public void sendSlotsChangedEvents(OnActivatedComponent event, EntityRef entityRef, InventoryComponent inventory,
+                                       SelectedInventorySlotComponent selectedInventorySlotComponent) {
+        if (!inventory.sendSlotsChangedEvents) {
+            inventory.sendSlotsChangedEvents = true;
+            entityRef.saveComponent(inventory);
+        }
+    }
+
+    @NetFilterEvent(netFilter = RegisterMode.AUTHORITY)
+    @ReceiveEvent
+    public void syncSelectedSlotWithHeldItem(InventorySlotsChangedEvent event, EntityRef entityRef,
                                              SelectedInventorySlotComponent selectedInventorySlotComponent) {
-        if (selectedInventorySlotComponent.slot == event.getSlot()) {
-            entityRef.send(new ChangeHeldItemRequest(event.getNewItem()));
+        if (event.isItemChanged(selectedInventorySlotComponent.slot)) {
+            entityRef.send(new ChangeHeldItemRequest(event.getNewItem(selectedInventorySlotComponent.slot)));
         }
     }
 
@@ -0,0 +1,42 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.systems;
+
+import org.terasology.engine.entitySystem.entity.EntityManager;
+import org.terasology.engine.entitySystem.metadata.ComponentMetadata;
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.registry.In;
+import org.terasology.gestalt.entitysystem.component.Component;
+import org.terasology.module.inventory.components.ItemDifferentiating;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the component classes implementing {@link ItemDifferentiating} from the component library, so that
+ * comparing two items only needs to fetch those components instead of iterating all components of both items.
+ */
+@RegisterSystem
+public class DifferentiatingComponentRegistry extends BaseComponentSystem {
+
+    @In
+    private EntityManager entityManager;
+
+    @Override
+    public void initialise() {
+        List<Class<? extends Component>> differentiatingComponents = new ArrayList<>();
+        for (ComponentMetadata<? extends Component> metadata : entityManager.getComponentLibrary().iterateComponentMetadata()) {
+            if (ItemDifferentiating.class.isAssignableFrom(metadata.getType())) {
+                differentiatingComponents.add(metadata.getType());
+            }
+        }
+        InventoryUtils.setDifferentiatingComponents(differentiatingComponents);
+    }
+
+    @Override
+    public void shutdown() {
+        InventoryUtils.setDifferentiatingComponents(null);
+    }
+}
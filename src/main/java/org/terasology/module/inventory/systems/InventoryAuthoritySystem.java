@@ -6,14 +6,18 @@ package org.terasology.module.inventory.systems;
 import com.google.common.collect.Lists;
 import org.terasology.engine.entitySystem.entity.EntityManager;
 import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.prefab.Prefab;
 import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.entitySystem.systems.RegisterMode;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
 import org.terasology.engine.logic.inventory.ItemComponent;
 import org.terasology.engine.registry.In;
 import org.terasology.engine.registry.Share;
+import org.terasology.engine.world.block.family.BlockFamily;
 import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
 import org.terasology.module.inventory.components.InventoryComponent;
+import org.terasology.module.inventory.events.AbstractMoveItemRequest;
+import org.terasology.module.inventory.events.BatchedInventoryRequest;
 import org.terasology.module.inventory.events.BeforeItemPutInInventory;
 import org.terasology.module.inventory.events.BeforeItemRemovedFromInventory;
 import org.terasology.module.inventory.events.GiveItemAction;
@@ -25,23 +29,39 @@ import org.terasology.module.inventory.events.MoveItemToSlotsRequest;
 import org.terasology.module.inventory.events.RemoveItemAction;
 import org.terasology.module.inventory.events.SwitchItemAction;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 @RegisterSystem(RegisterMode.AUTHORITY)
 @Share(InventoryManager.class)
 public class InventoryAuthoritySystem extends BaseComponentSystem implements InventoryManager {
     @In
     private EntityManager entityManager;
+    @In
+    private InventoryMetrics inventoryMetrics;
+
+    /**
+     * The transaction opened via {@link #beginTransaction()}, which all operations join until it is closed.
+     */
+    private InventoryTransaction openTransaction;
 
     public void setEntityManager(EntityManager entityManager) {
         this.entityManager = entityManager;
     }
 
+    public void setInventoryMetrics(InventoryMetrics inventoryMetrics) {
+        this.inventoryMetrics = inventoryMetrics;
+    }
+
     @ReceiveEvent(components = InventoryComponent.class)
     public void switchItem(SwitchItemAction event, EntityRef entity) {
         switchItem(entity, event.getInstigator(), event.getSlotFrom(), event.getTo(), event.getSlotTo());
@@ -64,8 +84,8 @@ public class InventoryAuthoritySystem extends BaseComponentSystem implements Inv
         }
     }
 
-    private EntityRef removeItemFromSlots(EntityRef instigator, boolean destroyRemoved, EntityRef entity, List<Integer> slotsWithItem,
-                                          int toRemove) {
+    private EntityRef removeItemFromSlots(InventoryTransaction transaction, EntityRef instigator, boolean destroyRemoved,
+                                          EntityRef entity, List<Integer> slotsWithItem, int toRemove) {
         int shrinkSlotNo = -1;
         int shrinkCountResult = 0;
 
@@ -76,7 +96,7 @@ public class InventoryAuthoritySystem extends BaseComponentSystem implements Inv
             EntityRef itemAtEntity = InventoryUtils.getItemAt(entity, slot);
             ItemComponent itemAt = itemAtEntity.getComponent(ItemComponent.class);
             if (itemAt.stackCount <= removesRemaining) {
-                if (canRemoveItemFromSlot(instigator, entity, itemAtEntity, slot)) {
+                if (canRemoveItemFromSlot(transaction, instigator, entity, itemAtEntity, slot)) {
                     slotsTotallyConsumed.add(slot);
                     removesRemaining -= itemAt.stackCount;
                 }
@@ -102,15 +122,15 @@ public class InventoryAuthoritySystem extends BaseComponentSystem implements Inv
             removedCount += InventoryUtils.getStackCount(itemAt);
 
             if (destroyRemoved) {
-                InventoryUtils.putItemIntoSlot(entity, EntityRef.NULL, slot);
-                itemAt.destroy();
+                transaction.putItemIntoSlot(entity, EntityRef.NULL, slot);
+                transaction.destroy(itemAt);
             } else {
                 if (removed == null) {
-                    InventoryUtils.putItemIntoSlot(entity, EntityRef.NULL, slot);
+                    transaction.putItemIntoSlot(entity, EntityRef.NULL, slot);
                     removed = itemAt;
                 } else {
-                    InventoryUtils.putItemIntoSlot(entity, EntityRef.NULL, slot);
-                    itemAt.destroy();
+                    transaction.putItemIntoSlot(entity, EntityRef.NULL, slot);
+                    transaction.destroy(itemAt);
                 }
             }
         }
@@ -119,20 +139,20 @@ public class InventoryAuthoritySystem extends BaseComponentSystem implements Inv
             EntityRef itemAt = InventoryUtils.getItemAt(entity, shrinkSlotNo);
             removedCount += InventoryUtils.getStackCount(itemAt) - shrinkCountResult;
             if (destroyRemoved) {
-                InventoryUtils.adjustStackSize(entity, shrinkSlotNo, shrinkCountResult);
+                transaction.adjustStackSize(entity, shrinkSlotNo, shrinkCountResult);
             } else {
                 if (removed == null) {
                     removed = entityManager.copy(itemAt);
+                    transaction.destroyOnRollback(removed);
                 }
-                InventoryUtils.adjustStackSize(entity, shrinkSlotNo, shrinkCountResult);
+                transaction.adjustStackSize(entity, shrinkSlotNo, shrinkCountResult);
             }
         }
 
         if (removed != null) {
             ItemComponent item = removed.getComponent(ItemComponent.class);
             if (item.stackCount != removedCount) {
-                item.stackCount = (byte) removedCount;
-                removed.saveComponent(item);
+                transaction.setStackCount(removed, removedCount);
             }
             return removed;
         }
@@ -146,41 +166,49 @@ public class InventoryAuthoritySystem extends BaseComponentSystem implements Inv
         }
     }
 
-    private boolean giveItemToSlots(EntityRef instigator, EntityRef entity, EntityRef item, List<Integer> slots) {
+    /**
+     * @param slots the slots to put the item into, or null for all slots of the inventory
+     */
+    private boolean giveItemToSlots(InventoryTransaction transaction, EntityRef instigator, EntityRef entity, EntityRef item,
+                                    List<Integer> slots) {
+        InventoryComponent inventory = entity.getComponent(InventoryComponent.class);
+        if (inventory == null) {
+            return false;
+        }
+        String stackId = item.getComponent(ItemComponent.class).stackId;
         int toConsume = InventoryUtils.getStackCount(item);
         Map<Integer, Integer> consumableCount = new LinkedHashMap<>();
+        BitSet examinedSlots = new BitSet();
 
-        // First: check which slots we can merge into
-        for (int slot : slots) {
-            EntityRef itemAtEntity = InventoryUtils.getItemAt(entity, slot);
-            ItemComponent itemAt = itemAtEntity.getComponent(ItemComponent.class);
-            if (itemAt != null && InventoryUtils.isSameItem(item, itemAtEntity)) {
-                int spaceInSlot = itemAt.maxStackSize - itemAt.stackCount;
-                int toAdd = Math.min(toConsume, spaceInSlot);
-                if (toAdd > 0) {
-                    consumableCount.put(slot, toAdd);
-                    toConsume -= toAdd;
-                    if (toConsume == 0) {
-                        break;
-                    }
-                }
-            }
-        }
+        // First: check which slots holding the same stack we can merge into
+        toConsume = collectMergeableSlots(entity, item, inventory.findSlotsWithStack(stackId, slots), toConsume,
+                consumableCount, examinedSlots);
 
         int emptySlotNo = -1;
         int emptySlotCount = toConsume;
         if (toConsume > 0) {
             // Next: check which slots are empty and figure out where to add
-            for (int slot : slots) {
-                EntityRef itemAtEntity = InventoryUtils.getItemAt(entity, slot);
-                ItemComponent itemAt = itemAtEntity.getComponent(ItemComponent.class);
-                if (itemAt == null && canPutItemIntoSlot(instigator, entity, item, slot)) {
-                    emptySlotNo = slot;
-                    emptySlotCount = toConsume;
-                    toConsume = 0;
-                    break;
+            emptySlotNo = findEmptySlot(transaction, instigator, entity, item, inventory.findEmptySlots(slots), examinedSlots);
+        }
+
+        if (toConsume > 0 && emptySlotNo == -1) {
+            // Items may have changed their stack id or been destroyed since they were put into their slot, so check
+            // the remaining slots before giving up
+            List<Integer> remainingSlots = new ArrayList<>();
+            for (int slot : slots != null ? slots : allSlots(entity)) {
+                if (slot < 0 || !examinedSlots.get(slot)) {
+                    remainingSlots.add(slot);
                 }
             }
+            toConsume = collectMergeableSlots(entity, item, remainingSlots, toConsume, consumableCount, examinedSlots);
+            emptySlotCount = toConsume;
+            if (toConsume > 0) {
+                emptySlotNo = findEmptySlot(transaction, instigator, entity, item, remainingSlots, examinedSlots);
+            }
+        }
+
+        if (emptySlotNo > -1) {
+            toConsume = 0;
         }
 
         if (toConsume > 0) {
@@ -192,45 +220,99 @@ public class InventoryAuthoritySystem extends BaseComponentSystem implements Inv
             int count = slotCount.getValue();
             EntityRef itemAtEntity = InventoryUtils.getItemAt(entity, slot);
             ItemComponent itemAt = itemAtEntity.getComponent(ItemComponent.class);
-            InventoryUtils.adjustStackSize(entity, slot, itemAt.stackCount + count);
+            transaction.adjustStackSize(entity, slot, itemAt.stackCount + count);
         }
 
         if (emptySlotNo > -1) {
-            ItemComponent sourceItem = item.getComponent(ItemComponent.class);
-            sourceItem.stackCount = (byte) emptySlotCount;
-            item.saveComponent(sourceItem);
-
-            InventoryUtils.putItemIntoSlot(entity, item, emptySlotNo);
+            transaction.setStackCount(item, emptySlotCount);
+            transaction.putItemIntoSlot(entity, item, emptySlotNo);
         } else {
-            item.destroy();
+            transaction.destroy(item);
         }
 
         return true;
     }
 
-    private boolean canPutItemIntoSlot(EntityRef instigator, EntityRef entity, EntityRef item, int slot) {
+    /**
+     * Plan merging the item into those of the given slots that hold the same item and have space left.
+     *
+     * @return the amount of the item that is still left to put somewhere
+     */
+    private int collectMergeableSlots(EntityRef entity, EntityRef item, List<Integer> slots, int toConsume,
+                                      Map<Integer, Integer> consumableCount, BitSet examinedSlots) {
+        int remaining = toConsume;
+        for (int slot : slots) {
+            if (remaining == 0) {
+                break;
+            }
+            if (slot >= 0) {
+                examinedSlots.set(slot);
+            }
+            EntityRef itemAtEntity = InventoryUtils.getItemAt(entity, slot);
+            ItemComponent itemAt = itemAtEntity.getComponent(ItemComponent.class);
+            if (itemAt != null && InventoryUtils.isSameItem(item, itemAtEntity)) {
+                int spaceInSlot = itemAt.maxStackSize - itemAt.stackCount;
+                int toAdd = Math.min(remaining, spaceInSlot);
+                if (toAdd > 0) {
+                    consumableCount.put(slot, toAdd);
+                    remaining -= toAdd;
+                }
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * @return the first of the given slots that is empty and allows the item to be put in, or -1 if there is none
+     */
+    private int findEmptySlot(InventoryTransaction transaction, EntityRef instigator, EntityRef entity, EntityRef item,
+                              List<Integer> slots, BitSet examinedSlots) {
+        for (int slot : slots) {
+            if (slot >= 0) {
+                examinedSlots.set(slot);
+            }
+            EntityRef itemAtEntity = InventoryUtils.getItemAt(entity, slot);
+            ItemComponent itemAt = itemAtEntity.getComponent(ItemComponent.class);
+            if (itemAt == null && canPutItemIntoSlot(transaction, instigator, entity, item, slot)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private List<Integer> allSlots(EntityRef entity) {
+        int slotCount = InventoryUtils.getSlotCount(entity);
+        List<Integer> slots = Lists.newArrayListWithCapacity(slotCount);
+        for (int slot = 0; slot < slotCount; slot++) {
+            slots.add(slot);
+        }
+        return slots;
+    }
+
+    private boolean canPutItemIntoSlot(InventoryTransaction transaction, EntityRef instigator, EntityRef entity,
+                                       EntityRef item, int slot) {
         if (!item.exists()) {
             return true;
         }
         BeforeItemPutInInventory itemPut = new BeforeItemPutInInventory(instigator, item, slot);
-        entity.send(itemPut);
+        transaction.send(entity, itemPut);
         return !itemPut.isConsumed();
     }
 
-    private boolean canRemoveItemFromSlot(EntityRef instigator, EntityRef entity, EntityRef item, int slot) {
+    private boolean canRemoveItemFromSlot(InventoryTransaction transaction, EntityRef instigator, EntityRef entity,
+                                          EntityRef item, int slot) {
         if (!item.exists()) {
             return true;
         }
         BeforeItemRemovedFromInventory itemRemoved = new BeforeItemRemovedFromInventory(instigator, item, slot);
-        entity.send(itemRemoved);
+        transaction.send(entity, itemRemoved);
         return !itemRemoved.isConsumed();
     }
 
     @ReceiveEvent
     public void moveItemAmountRequest(MoveItemAmountRequest request, EntityRef entity) {
         try {
-            InventoryUtils.moveItemAmount(request.getInstigator(), request.getFromInventory(), request.getFromSlot(),
-                    request.getToInventory(), request.getToSlot(), request.getAmount());
+            applyMoveRequest(request);
         } finally {
             entity.send(new InventoryChangeAcknowledgedRequest(request.getChangeId()));
         }
@@ -239,9 +321,7 @@ public class InventoryAuthoritySystem extends BaseComponentSystem implements Inv
     @ReceiveEvent
     public void moveItemRequest(MoveItemRequest request, EntityRef entity) {
         try {
-            InventoryUtils.moveItem(request.getInstigator(), request.getFromInventory(), request.getFromSlot(),
-                    request.getToInventory(), request.getToSlot());
-
+            applyMoveRequest(request);
         } finally {
             entity.send(new InventoryChangeAcknowledgedRequest(request.getChangeId()));
         }
@@ -250,14 +330,41 @@ public class InventoryAuthoritySystem extends BaseComponentSystem implements Inv
     @ReceiveEvent
     public void moveItemToSlotsRequest(MoveItemToSlotsRequest request, EntityRef entity) {
         try {
-            InventoryUtils.moveItemToSlots(request.getInstigator(), request.getFromInventory(), request.getFromSlot(),
-                    request.getToInventory(), request.getToSlots());
-
+            applyMoveRequest(request);
         } finally {
             entity.send(new InventoryChangeAcknowledgedRequest(request.getChangeId()));
         }
     }
 
+    /**
+     * Apply all moves of the batch in a single transaction, and acknowledge them all at once.
+     */
+    @ReceiveEvent
+    public void batchedInventoryRequest(BatchedInventoryRequest request, EntityRef entity) {
+        try (InventoryTransaction transaction = beginTransaction()) {
+            for (AbstractMoveItemRequest move : request.getMoves()) {
+                applyMoveRequest(move);
+            }
+            transaction.commit();
+        } finally {
+            entity.send(new InventoryChangeAcknowledgedRequest(request.getFirstChangeId(), request.getLastChangeId()));
+        }
+    }
+
+    private void applyMoveRequest(AbstractMoveItemRequest request) {
+        if (request instanceof MoveItemRequest) {
+            MoveItemRequest r = (MoveItemRequest) request;
+            switchItem(r.getFromInventory(), r.getInstigator(), r.getFromSlot(), r.getToInventory(), r.getToSlot());
+        } else if (request instanceof MoveItemAmountRequest) {
+            MoveItemAmountRequest r = (MoveItemAmountRequest) request;
+            moveItem(r.getFromInventory(), r.getInstigator(), r.getFromSlot(), r.getToInventory(), r.getToSlot(),
+                    r.getAmount());
+        } else if (request instanceof MoveItemToSlotsRequest) {
+            MoveItemToSlotsRequest r = (MoveItemToSlotsRequest) request;
+            moveItemToSlots(r.getInstigator(), r.getFromInventory(), r.getFromSlot(), r.getToInventory(), r.getToSlots());
+        }
+    }
+
     @Override
     public boolean canStackTogether(EntityRef itemA, EntityRef itemB) {
         return InventoryUtils.canStackInto(itemA, itemB);
@@ -283,6 +390,16 @@ public class InventoryAuthoritySystem extends BaseComponentSystem implements Inv
         return InventoryUtils.getSlotCount(inventoryEntity);
     }
 
+    @Override
+    public int countByPrefab(EntityRef inventoryEntity, Prefab prefab) {
+        return InventoryUtils.countItems(inventoryEntity, prefab);
+    }
+
+    @Override
+    public int countByBlockFamily(EntityRef inventoryEntity, BlockFamily blockFamily) {
+        return InventoryUtils.countItems(inventoryEntity, blockFamily);
+    }
+
     @Override
     public boolean giveItem(EntityRef inventory, EntityRef instigator, EntityRef item) {
         return giveItem(inventory, instigator, item, null);
@@ -300,15 +417,126 @@ public class InventoryAuthoritySystem extends BaseComponentSystem implements Inv
             return true;
         }
 
-        List<Integer> fillSlots = slots;
-        if (fillSlots == null) {
-            int slotCount = InventoryUtils.getSlotCount(inventory);
-            fillSlots = Lists.newArrayList();
-            for (int slot = 0; slot < slotCount; slot++) {
-                fillSlots.add(slot);
+        return inTransaction(InventoryMetrics.Operation.GIVE, transaction -> giveItemToSlots(transaction, instigator, inventory, item, slots),
+                Boolean::booleanValue);
+    }
+
+    @Override
+    public int giveItems(EntityRef inventory, EntityRef instigator, Prefab prefab, int count, List<Integer> slots) {
+        if (count <= 0 || prefab.getComponent(ItemComponent.class) == null) {
+            return count;
+        }
+
+        return inTransaction(InventoryMetrics.Operation.GIVE,
+                transaction -> giveItemsToSlots(transaction, instigator, inventory, prefab, count, slots),
+                left -> left < count);
+    }
+
+    /**
+     * Add the items to the stacks of the same item in the given slots first, then put them into empty slots, creating
+     * one entity per slot filled.
+     *
+     * @return the number of items that did not fit
+     */
+    private int giveItemsToSlots(InventoryTransaction transaction, EntityRef instigator, EntityRef entity, Prefab prefab,
+                                 int count, List<Integer> slots) {
+        InventoryComponent inventory = entity.getComponent(InventoryComponent.class);
+        if (inventory == null) {
+            return count;
+        }
+        ItemComponent prefabItem = prefab.getComponent(ItemComponent.class);
+        BitSet examinedSlots = new BitSet();
+
+        int left = count;
+        if (InventoryUtils.isStackable(prefabItem)) {
+            left = addToStacks(transaction, entity, prefab, inventory.findSlotsWithStack(prefabItem.stackId, slots), left,
+                    examinedSlots);
+        }
+        left = fillEmptySlots(transaction, instigator, entity, prefab, inventory.findEmptySlots(slots), left, examinedSlots);
+
+        if (left > 0) {
+            // Items may have changed their stack id or been destroyed since they were put into their slot, so check
+            // the remaining slots before giving up
+            List<Integer> remainingSlots = new ArrayList<>();
+            for (int slot : slots != null ? slots : allSlots(entity)) {
+                if (slot < 0 || !examinedSlots.get(slot)) {
+                    remainingSlots.add(slot);
+                }
+            }
+            if (InventoryUtils.isStackable(prefabItem)) {
+                left = addToStacks(transaction, entity, prefab, remainingSlots, left, examinedSlots);
+            }
+            left = fillEmptySlots(transaction, instigator, entity, prefab, remainingSlots, left, examinedSlots);
+        }
+        return left;
+    }
+
+    /**
+     * Add items of the prefab to those of the given slots that hold the same item and have space left.
+     *
+     * @return the number of items that are still left to put somewhere
+     */
+    private int addToStacks(InventoryTransaction transaction, EntityRef entity, Prefab prefab, List<Integer> slots,
+                            int count, BitSet examinedSlots) {
+        int left = count;
+        for (int slot : slots) {
+            if (left == 0) {
+                break;
+            }
+            if (slot >= 0) {
+                examinedSlots.set(slot);
+            }
+            EntityRef itemAtEntity = InventoryUtils.getItemAt(entity, slot);
+            ItemComponent itemAt = itemAtEntity.getComponent(ItemComponent.class);
+            if (itemAt != null && InventoryUtils.isSameItem(prefab, itemAtEntity)) {
+                int toAdd = Math.min(left, itemAt.maxStackSize - itemAt.stackCount);
+                if (toAdd > 0) {
+                    transaction.adjustStackSize(entity, slot, itemAt.stackCount + toAdd);
+                    left -= toAdd;
+                }
             }
         }
-        return giveItemToSlots(instigator, inventory, item, fillSlots);
+        return left;
+    }
+
+    /**
+     * Put items of the prefab into those of the given slots that are empty, creating one entity per slot filled.
+     *
+     * @return the number of items that are still left to put somewhere
+     */
+    private int fillEmptySlots(InventoryTransaction transaction, EntityRef instigator, EntityRef entity, Prefab prefab,
+                               List<Integer> slots, int count, BitSet examinedSlots) {
+        ItemComponent prefabItem = prefab.getComponent(ItemComponent.class);
+        int stackSize = InventoryUtils.isStackable(prefabItem) ? prefabItem.maxStackSize : 1;
+        int left = count;
+        EntityRef item = EntityRef.NULL;
+        for (int slot : slots) {
+            if (left == 0) {
+                break;
+            }
+            if (slot >= 0) {
+                examinedSlots.set(slot);
+            }
+            if (InventoryUtils.getItemAt(entity, slot).getComponent(ItemComponent.class) != null) {
+                continue;
+            }
+            if (!item.exists()) {
+                item = entityManager.create(prefab);
+                transaction.destroyOnRollback(item);
+            }
+            if (canPutItemIntoSlot(transaction, instigator, entity, item, slot)) {
+                int toAdd = Math.min(left, stackSize);
+                transaction.setStackCount(item, toAdd);
+                transaction.putItemIntoSlot(entity, item, slot);
+                left -= toAdd;
+                item = EntityRef.NULL;
+            }
+        }
+        if (item.exists()) {
+            // vetoed everywhere
+            item.destroy();
+        }
+        return left;
     }
 
     @Override
@@ -337,7 +565,39 @@ public class InventoryAuthoritySystem extends BaseComponentSystem implements Inv
         if (InventoryUtils.getStackCount(item) < count) {
             return null;
         }
-        return removeItemFromSlots(instigator, destroyRemoved, inventory, Collections.singletonList(slotNo), count);
+        return inTransaction(InventoryMetrics.Operation.REMOVE, transaction -> removeItemFromSlots(transaction, instigator, destroyRemoved, inventory,
+                Collections.singletonList(slotNo), count), Objects::nonNull);
+    }
+
+    @Override
+    public EntityRef removeByPrefab(EntityRef inventory, EntityRef instigator, Prefab prefab, int count,
+                                    boolean destroyRemoved) {
+        InventoryComponent inventoryComponent = inventory.getComponent(InventoryComponent.class);
+        if (inventoryComponent == null || count <= 0 || inventoryComponent.countItemsWithPrefab(prefab) < count) {
+            return null;
+        }
+        return removeItemsFromSlots(inventory, instigator, inventoryComponent.findSlotsWithPrefab(prefab, null), count,
+                destroyRemoved);
+    }
+
+    @Override
+    public EntityRef removeByBlockFamily(EntityRef inventory, EntityRef instigator, BlockFamily blockFamily, int count,
+                                         boolean destroyRemoved) {
+        InventoryComponent inventoryComponent = inventory.getComponent(InventoryComponent.class);
+        if (inventoryComponent == null || count <= 0 || inventoryComponent.countItemsWithBlockFamily(blockFamily) < count) {
+            return null;
+        }
+        return removeItemsFromSlots(inventory, instigator, inventoryComponent.findSlotsWithBlockFamily(blockFamily, null),
+                count, destroyRemoved);
+    }
+
+    /**
+     * Remove count items from the given slots, last slot first, or nothing if there are not as many that may be removed.
+     */
+    private EntityRef removeItemsFromSlots(EntityRef inventory, EntityRef instigator, List<Integer> slots, int count,
+                                           boolean destroyRemoved) {
+        return inTransaction(InventoryMetrics.Operation.REMOVE, transaction -> removeItemFromSlots(transaction, instigator,
+                destroyRemoved, inventory, Lists.reverse(slots), count), Objects::nonNull);
     }
 
     private EntityRef removeItemInternal(EntityRef inventory, EntityRef instigator, List<EntityRef> items, boolean destroyRemoved, Integer count) {
@@ -372,21 +632,76 @@ public class InventoryAuthoritySystem extends BaseComponentSystem implements Inv
             }
         }
 
-        return removeItemFromSlots(instigator, destroyRemoved, inventory, slotsWithItem, toRemove);
+        int amount = toRemove;
+        return inTransaction(InventoryMetrics.Operation.REMOVE, transaction -> removeItemFromSlots(transaction, instigator, destroyRemoved, inventory,
+                slotsWithItem, amount), Objects::nonNull);
     }
 
     @Override
     public boolean moveItem(EntityRef fromInventory, EntityRef instigator, int slotFrom, EntityRef toInventory, int slotTo, int count) {
-        return InventoryUtils.moveItemAmount(instigator, fromInventory, slotFrom, toInventory, slotTo, count);
+        return inTransaction(InventoryMetrics.Operation.MOVE, transaction -> InventoryUtils.moveItemAmount(transaction, instigator, fromInventory, slotFrom,
+                toInventory, slotTo, count), Boolean::booleanValue);
     }
 
     @Override
     public boolean moveItemToSlots(EntityRef instigator, EntityRef fromInventory, int slotFrom, EntityRef toInventory, List<Integer> toSlots) {
-        return InventoryUtils.moveItemToSlots(instigator, fromInventory, slotFrom, toInventory, toSlots);
+        return inTransaction(InventoryMetrics.Operation.MOVE_TO_SLOTS, transaction -> InventoryUtils.moveItemToSlots(transaction, instigator, fromInventory, slotFrom,
+                toInventory, toSlots), Boolean::booleanValue);
     }
 
     @Override
     public boolean switchItem(EntityRef fromInventory, EntityRef instigator, int slotFrom, EntityRef toInventory, int slotTo) {
-        return InventoryUtils.moveItem(instigator, fromInventory, slotFrom, toInventory, slotTo);
+        return inTransaction(InventoryMetrics.Operation.SWITCH, transaction -> InventoryUtils.moveItem(transaction, instigator, fromInventory, slotFrom,
+                toInventory, slotTo), Boolean::booleanValue);
+    }
+
+    @Override
+    public InventoryTransaction beginTransaction() {
+        if (openTransaction != null) {
+            return openTransaction.nest();
+        }
+        openTransaction = new InventoryTransaction(() -> openTransaction = null);
+        return openTransaction;
+    }
+
+    /**
+     * Run an operation as part of the open transaction, or in a transaction of its own if there is none.
+     * <p>
+     * If the operation does not succeed, whatever it changed before failing is rolled back.
+     * The events and saves of an operation joining the open transaction are only partially attributed to it, as most of
+     * them happen when that transaction is committed.
+     *
+     * @param kind the kind of operation to record metrics for
+     * @param operation the operation staging its changes in the given transaction
+     * @param succeeded whether the result of the operation means that it succeeded
+     * @return the result of the operation
+     */
+    private <T> T inTransaction(InventoryMetrics.Operation kind, Function<InventoryTransaction, T> operation,
+                                Predicate<? super T> succeeded) {
+        long startTime = System.nanoTime();
+        InventoryTransaction transaction = openTransaction != null ? openTransaction : new InventoryTransaction();
+        int savepoint = transaction.savepoint();
+        int sentEvents = transaction.getSentEvents();
+        int vetoes = transaction.getVetoes();
+        int savedComponents = transaction.getSavedComponents();
+        boolean success = false;
+        try {
+            T result = operation.apply(transaction);
+            success = succeeded.test(result);
+            return result;
+        } finally {
+            if (!success) {
+                transaction.rollbackTo(savepoint);
+            }
+            if (transaction != openTransaction) {
+                transaction.commit();
+            }
+            if (inventoryMetrics != null) {
+                inventoryMetrics.record(kind, System.nanoTime() - startTime, success,
+                        transaction.getVetoes() > vetoes,
+                        transaction.getSentEvents() - sentEvents,
+                        transaction.getSavedComponents() - savedComponents);
+            }
+        }
     }
 }
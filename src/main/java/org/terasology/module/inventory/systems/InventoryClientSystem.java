@@ -3,25 +3,39 @@
 
 package org.terasology.module.inventory.systems;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.prefab.Prefab;
 import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.entitySystem.systems.RegisterMode;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.entitySystem.systems.UpdateSubscriberSystem;
 import org.terasology.engine.logic.players.LocalPlayer;
+import org.terasology.engine.network.ClientComponent;
 import org.terasology.engine.registry.In;
 import org.terasology.engine.registry.Share;
+import org.terasology.engine.world.block.family.BlockFamily;
 import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
 import org.terasology.module.inventory.components.InventoryComponent;
+import org.terasology.module.inventory.events.AbstractInventorySlotsDeltaEvent;
 import org.terasology.module.inventory.events.AbstractMoveItemRequest;
+import org.terasology.module.inventory.events.BatchedInventoryRequest;
 import org.terasology.module.inventory.events.InventoryChangeAcknowledgedRequest;
+import org.terasology.module.inventory.events.InventorySlotsDeltaEvent;
 import org.terasology.module.inventory.events.MoveItemAction;
 import org.terasology.module.inventory.events.MoveItemAmountRequest;
 import org.terasology.module.inventory.events.MoveItemRequest;
 import org.terasology.module.inventory.events.MoveItemToSlotsRequest;
+import org.terasology.module.inventory.events.OwnerInventorySlotsDeltaEvent;
 import org.terasology.module.inventory.events.SwitchItemAction;
+import org.terasology.module.inventory.events.ViewedInventorySlotsEvent;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,12 +43,22 @@ import java.util.Set;
 
 @RegisterSystem(RegisterMode.REMOTE_CLIENT)
 @Share(InventoryManager.class)
-public class InventoryClientSystem extends BaseComponentSystem implements InventoryManager {
+public class InventoryClientSystem extends BaseComponentSystem implements InventoryManager, UpdateSubscriberSystem {
+    private static final Logger logger = LoggerFactory.getLogger(InventoryClientSystem.class);
 
     @In
     private LocalPlayer localPlayer;
 
-    private final Map<Integer, AbstractMoveItemRequest> pendingMoves = new LinkedHashMap<>();
+    private final Map<Integer, PendingMove> pendingMoves = new LinkedHashMap<>();
+    /**
+     * Moves made since the last update, sent to the server together at the end of the frame.
+     */
+    private final List<AbstractMoveItemRequest> unsentMoves = new ArrayList<>();
+    /**
+     * Temp entities no longer needed for a prediction, with the slot they were predicted in. They are destroyed once
+     * the server's state has replaced them there, as they may be shown until then.
+     */
+    private final Map<EntityRef, Slot> retiredTempEntities = new HashMap<>();
 
     private int changeId;
 
@@ -50,57 +74,185 @@ public class InventoryClientSystem extends BaseComponentSystem implements Invent
         moveItem(entity, event.getInstigator(), event.getSlotFrom(), event.getTo(), event.getSlotTo(), event.getCount());
     }
 
-    @ReceiveEvent(components = InventoryComponent.class)
+    @ReceiveEvent
+    public void onSlotsReplicated(InventorySlotsDeltaEvent event, EntityRef entity, InventoryComponent inventory) {
+        applySlotsDelta(event, entity, inventory);
+    }
+
+    @ReceiveEvent
+    public void onOwnedSlotsReplicated(OwnerInventorySlotsDeltaEvent event, EntityRef entity, InventoryComponent inventory) {
+        applySlotsDelta(event, entity, inventory);
+    }
+
+    /**
+     * The server sends the slots of inventories it only replicates to viewers to the client entity.
+     */
+    @ReceiveEvent(components = ClientComponent.class)
+    public void onViewedSlotsReplicated(ViewedInventorySlotsEvent event, EntityRef entity) {
+        EntityRef inventoryEntity = event.getInventory();
+        InventoryComponent inventory = inventoryEntity.getComponent(InventoryComponent.class);
+        if (inventory == null) {
+            return;
+        }
+        if (event.isComplete() && inventory.itemSlots.size() != event.getSlotCount()) {
+            inventory.itemSlots.clear();
+            for (int i = 0; i < event.getSlotCount(); i++) {
+                inventory.itemSlots.add(EntityRef.NULL);
+            }
+        }
+        applySlotsDelta(event, inventoryEntity, inventory);
+    }
+
+    /**
+     * Apply the slots the server replicated individually. If the inventory does not have as many slots as on the
+     * server, the change is left to the next full replication of the inventory.
+     */
+    private void applySlotsDelta(AbstractInventorySlotsDeltaEvent event, EntityRef entity, InventoryComponent inventory) {
+        if (inventory.itemSlots.size() != event.getSlotCount()) {
+            return;
+        }
+        for (int i = 0; i < event.getSlots().size(); i++) {
+            inventory.itemSlots.set(event.getSlots().get(i), event.getItems().get(i));
+        }
+        entity.saveComponent(inventory);
+    }
+
+    /**
+     * The server acknowledges changes to the client entity, in the order they were requested. Pending moves older than
+     * the acknowledged ones will not be acknowledged anymore, so they are dropped as well, leaving their slots to the
+     * server's state.
+     */
+    @ReceiveEvent(components = ClientComponent.class)
     public void inventoryChangeAcknowledge(InventoryChangeAcknowledgedRequest event, EntityRef entity) {
-        //TODO: This does not ever get triggered because the event is sent to the client,  not the character.
-        //      If it did get triggered,  it causes a mess of question mark items.
-        AbstractMoveItemRequest removedRequest = pendingMoves.remove(event.getChangeId());
-        if (removedRequest != null) {
-            destroyClientTempEntities(removedRequest);
+        if (!pendingMoves.containsKey(event.getFirstChangeId())) {
+            logger.warn("Acknowledged inventory changes {} to {} are not pending", event.getFirstChangeId(),
+                    event.getChangeId());
+        }
+        Iterator<PendingMove> pending = pendingMoves.values().iterator();
+        while (pending.hasNext()) {
+            PendingMove move = pending.next();
+            int moveChangeId = move.request.getChangeId();
+            if (moveChangeId > event.getChangeId()) {
+                break;
+            }
+            if (moveChangeId < event.getFirstChangeId()) {
+                logger.warn("Inventory change {} was not acknowledged, dropping its prediction", moveChangeId);
+            }
+            pending.remove();
+            move.retireTempEntity();
         }
 
-        recalculatePredictedState();
+        reconcilePredictedState();
     }
 
-    private void destroyClientTempEntities(AbstractMoveItemRequest removedRequest) {
-        for (EntityRef tempEntity : removedRequest.getClientSideTempEntities()) {
-            if (tempEntity.exists()) {
-                tempEntity.destroy();
+    /**
+     * Make sure the remaining pending moves are reflected in the inventories.
+     * <p>
+     * A move only has to be predicted again if the server's state has replaced a slot it changed, or if it shares a
+     * slot with such a move. All slots of those moves are first reset to what they held before the first pending move
+     * touching them, unless the server's state already replaced them, and then only those moves are replayed in order.
+     * Moves whose predictions still hold are left alone.
+     */
+    private void reconcilePredictedState() {
+        Map<Slot, SlotState> predicted = new HashMap<>();
+        Map<Slot, SlotState> unpredicted = new HashMap<>();
+        for (PendingMove move : pendingMoves.values()) {
+            for (int i = 0; i < move.slots.size(); i++) {
+                unpredicted.putIfAbsent(move.slots.get(i), move.before.get(i));
+                predicted.put(move.slots.get(i), move.after.get(i));
+            }
+        }
+
+        Set<Slot> replaced = new HashSet<>();
+        for (Map.Entry<Slot, SlotState> slot : predicted.entrySet()) {
+            if (!slot.getValue().matches(slot.getKey())) {
+                replaced.add(slot.getKey());
+            }
+        }
+        Set<Slot> reset = new HashSet<>(replaced);
+        List<PendingMove> replayed = new ArrayList<>();
+        boolean grown = !reset.isEmpty();
+        while (grown) {
+            grown = false;
+            for (PendingMove move : pendingMoves.values()) {
+                if (!replayed.contains(move) && !Collections.disjoint(move.slots, reset)) {
+                    replayed.add(move);
+                    grown |= reset.addAll(move.slots);
+                }
+            }
+        }
+
+        if (!replayed.isEmpty()) {
+            InventoryTransaction transaction = new InventoryTransaction();
+            for (Slot slot : reset) {
+                if (!replaced.contains(slot)) {
+                    unpredicted.get(slot).restore(transaction, slot);
+                }
+            }
+            for (PendingMove move : pendingMoves.values()) {
+                if (replayed.contains(move)) {
+                    predict(transaction, move);
+                }
             }
+            transaction.commit();
         }
+
+        destroyReplacedTempEntities();
     }
 
-    private void recalculatePredictedState() {
-        for (AbstractMoveItemRequest request : pendingMoves.values()) {
-            // For each remaining pending request, we need to destroy all temp entities that request previously created,
-            // then redo the change requested and store new temp entities in the request to be destroyed once that
-            // pending request is acknowledged by the server
-            if (request instanceof MoveItemRequest) {
-                MoveItemRequest r = (MoveItemRequest) request;
-                destroyClientTempEntities(r);
+    private void destroyReplacedTempEntities() {
+        Iterator<Map.Entry<EntityRef, Slot>> retired = retiredTempEntities.entrySet().iterator();
+        while (retired.hasNext()) {
+            Map.Entry<EntityRef, Slot> tempEntity = retired.next();
+            if (!tempEntity.getKey().exists()) {
+                retired.remove();
+            } else if (!tempEntity.getValue().getItem().equals(tempEntity.getKey()) && !isInPredictedSlot(tempEntity.getKey())) {
+                tempEntity.getKey().destroy();
+                retired.remove();
+            }
+        }
+    }
 
-                Collection<EntityRef> newClientTempEntities = new HashSet<>();
-                moveItemFillClientTempEntities(request.getFromInventory(), r.getInstigator(), r.getFromSlot(), r.getToInventory(),
-                        r.getToSlot(), newClientTempEntities);
-                r.setClientSideTempEntities(newClientTempEntities);
-            } else if (request instanceof MoveItemAmountRequest) {
-                MoveItemAmountRequest r = (MoveItemAmountRequest) request;
-                destroyClientTempEntities(r);
+    private boolean isInPredictedSlot(EntityRef item) {
+        for (PendingMove move : pendingMoves.values()) {
+            for (Slot slot : move.slots) {
+                if (slot.getItem().equals(item)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 
-                Collection<EntityRef> newClientTempEntities = new HashSet<>();
-                moveItemAmountFillClientTempEntities(r.getFromInventory(), r.getInstigator(), r.getFromSlot(), r.getToInventory(),
-                        r.getToSlot(), r.getAmount(), newClientTempEntities);
-                r.setClientSideTempEntities(newClientTempEntities);
-            } else if (request instanceof MoveItemToSlotsRequest) {
-                MoveItemToSlotsRequest r = (MoveItemToSlotsRequest) request;
-                destroyClientTempEntities(r);
+    @Override
+    public void update(float delta) {
+        flushMoves();
+    }
 
-                Collection<EntityRef> newClientTempEntities = new HashSet<>();
-                moveItemToSlotsFillClientTempEntities(r.getInstigator(), r.getFromInventory(), r.getFromSlot(), r.getToInventory(),
-                        r.getToSlots(), newClientTempEntities);
-                r.setClientSideTempEntities(newClientTempEntities);
+    /**
+     * Send the moves made since the last flush: a single move as it is, several as {@link BatchedInventoryRequest}s
+     * of consecutive moves by the same instigator.
+     */
+    private void flushMoves() {
+        if (unsentMoves.isEmpty()) {
+            return;
+        }
+        EntityRef client = localPlayer.getClientEntity();
+        int start = 0;
+        while (start < unsentMoves.size()) {
+            EntityRef instigator = unsentMoves.get(start).getInstigator();
+            int end = start + 1;
+            while (end < unsentMoves.size() && unsentMoves.get(end).getInstigator().equals(instigator)) {
+                end++;
             }
+            if (end - start == 1) {
+                client.send(unsentMoves.get(start));
+            } else {
+                client.send(new BatchedInventoryRequest(unsentMoves.subList(start, end)));
+            }
+            start = end;
         }
+        unsentMoves.clear();
     }
 
     @Override
@@ -128,6 +280,21 @@ public class InventoryClientSystem extends BaseComponentSystem implements Invent
         return InventoryUtils.getSlotCount(inventoryEntity);
     }
 
+    @Override
+    public int countByPrefab(EntityRef inventoryEntity, Prefab prefab) {
+        return InventoryUtils.countItems(inventoryEntity, prefab);
+    }
+
+    @Override
+    public int countByBlockFamily(EntityRef inventoryEntity, BlockFamily blockFamily) {
+        return InventoryUtils.countItems(inventoryEntity, blockFamily);
+    }
+
+    @Override
+    public InventoryTransaction beginTransaction() {
+        throw new UnsupportedOperationException("This operation cannot be invoked on the client");
+    }
+
     @Override
     public boolean giveItem(EntityRef inventory, EntityRef instigator, EntityRef item) {
         throw new UnsupportedOperationException("This operation cannot be invoked on the client");
@@ -143,6 +310,23 @@ public class InventoryClientSystem extends BaseComponentSystem implements Invent
         throw new UnsupportedOperationException("This operation cannot be invoked on the client");
     }
 
+    @Override
+    public int giveItems(EntityRef inventory, EntityRef instigator, Prefab prefab, int count, List<Integer> slots) {
+        throw new UnsupportedOperationException("This operation cannot be invoked on the client");
+    }
+
+    @Override
+    public EntityRef removeByPrefab(EntityRef inventory, EntityRef instigator, Prefab prefab, int count,
+                                    boolean destroyRemoved) {
+        throw new UnsupportedOperationException("This operation cannot be invoked on the client");
+    }
+
+    @Override
+    public EntityRef removeByBlockFamily(EntityRef inventory, EntityRef instigator, BlockFamily blockFamily, int count,
+                                         boolean destroyRemoved) {
+        throw new UnsupportedOperationException("This operation cannot be invoked on the client");
+    }
+
     @Override
     public EntityRef removeItem(EntityRef inventory, EntityRef instigator, EntityRef item, boolean destroyRemoved) {
         throw new UnsupportedOperationException("This operation cannot be invoked on the client");
@@ -170,105 +354,175 @@ public class InventoryClientSystem extends BaseComponentSystem implements Invent
 
     @Override
     public boolean moveItem(EntityRef fromInventory, EntityRef instigator, int slotFrom, EntityRef toInventory, int slotTo, int count) {
-        Collection<EntityRef> clientTempEntities = new HashSet<>();
-        if (moveItemAmountFillClientTempEntities(fromInventory, instigator, slotFrom, toInventory, slotTo, count, clientTempEntities)) {
-            return false;
-        }
+        return request(new MoveItemAmountRequest(instigator, fromInventory, slotFrom, toInventory, slotTo, count,
+                changeId, new HashSet<>()));
+    }
 
-        MoveItemAmountRequest request = new MoveItemAmountRequest(instigator, fromInventory,
-                slotFrom, toInventory, slotTo, count, changeId++, clientTempEntities);
-        pendingMoves.put(request.getChangeId(), request);
-        localPlayer.getClientEntity().send(request);
+    @Override
+    public boolean moveItemToSlots(EntityRef instigator, EntityRef fromInventory, int slotFrom, EntityRef toInventory, List<Integer> toSlots) {
+        return request(new MoveItemToSlotsRequest(instigator, fromInventory, slotFrom, toInventory, toSlots,
+                changeId, new HashSet<>()));
+    }
 
-        return true;
+    @Override
+    public boolean switchItem(EntityRef fromInventory, EntityRef instigator, int slotFrom, EntityRef toInventory, int slotTo) {
+        return request(new MoveItemRequest(instigator, fromInventory, slotFrom, toInventory, slotTo,
+                changeId, new HashSet<>()));
     }
 
-    private boolean moveItemAmountFillClientTempEntities(EntityRef fromInventory, EntityRef instigator, int slotFrom,
-            EntityRef toInventory, int slotTo, int count, Collection<EntityRef> clientTempEntities) {
-        EntityRef itemAtBefore = InventoryUtils.getItemAt(toInventory, slotTo);
-        boolean itemExisted = itemAtBefore.exists();
-        if (!InventoryUtils.moveItemAmount(instigator, fromInventory, slotFrom, toInventory, slotTo, count)) {
-            return true;
+    /**
+     * Predict the move and queue it to be sent to the server, unless it cannot be made.
+     */
+    private boolean request(AbstractMoveItemRequest request) {
+        PendingMove move = new PendingMove(request);
+        InventoryTransaction transaction = new InventoryTransaction();
+        if (!predict(transaction, move)) {
+            transaction.rollback();
+            return false;
         }
+        transaction.commit();
 
-        if (!itemExisted) {
-            clientTempEntities.add(InventoryUtils.getItemAt(toInventory, slotTo));
-        }
-        return false;
+        changeId++;
+        pendingMoves.put(request.getChangeId(), move);
+        unsentMoves.add(request);
+        return true;
     }
 
-
-    @Override
-    public boolean moveItemToSlots(EntityRef instigator, EntityRef fromInventory, int slotFrom, EntityRef toInventory, List<Integer> toSlots) {
-        Collection<EntityRef> clientTempEntities = new HashSet<>();
-        if (moveItemToSlotsFillClientTempEntities(instigator, fromInventory, slotFrom, toInventory, toSlots, clientTempEntities)) {
-            return false;
+    /**
+     * Apply the move to the inventories, recording the slots it changed and reusing its temp entity if it has one.
+     *
+     * @return whether the move could be made; if not, it has not changed anything
+     */
+    private boolean predict(InventoryTransaction transaction, PendingMove move) {
+        AbstractMoveItemRequest request = move.request;
+        move.before = move.capture();
+        int savepoint = transaction.savepoint();
+        boolean success = false;
+        if (request instanceof MoveItemRequest) {
+            MoveItemRequest r = (MoveItemRequest) request;
+            success = InventoryUtils.moveItem(transaction, r.getInstigator(), r.getFromInventory(), r.getFromSlot(),
+                    r.getToInventory(), r.getToSlot());
+        } else if (request instanceof MoveItemAmountRequest) {
+            MoveItemAmountRequest r = (MoveItemAmountRequest) request;
+            success = InventoryUtils.moveItemAmount(transaction, r.getInstigator(), r.getFromInventory(), r.getFromSlot(),
+                    r.getToInventory(), r.getToSlot(), r.getAmount(), move.tempEntity);
+        } else if (request instanceof MoveItemToSlotsRequest) {
+            MoveItemToSlotsRequest r = (MoveItemToSlotsRequest) request;
+            success = InventoryUtils.moveItemToSlots(transaction, r.getInstigator(), r.getFromInventory(), r.getFromSlot(),
+                    r.getToInventory(), r.getToSlots());
         }
+        if (!success) {
+            transaction.rollbackTo(savepoint);
+        }
+        move.after = move.capture();
 
-        MoveItemToSlotsRequest request = new MoveItemToSlotsRequest(instigator, fromInventory,
-                slotFrom, toInventory, toSlots, changeId++, clientTempEntities);
-        pendingMoves.put(request.getChangeId(), request);
-        localPlayer.getClientEntity().send(request);
-
-        return true;
+        EntityRef tempEntity = EntityRef.NULL;
+        if (success && request instanceof MoveItemAmountRequest && !move.before.get(1).item.exists()) {
+            // splitting a stack into an empty slot is the only move that creates an entity
+            tempEntity = move.after.get(1).item;
+        }
+        if (!tempEntity.equals(move.tempEntity)) {
+            move.retireTempEntity();
+            move.tempEntity = tempEntity;
+        }
+        request.setClientSideTempEntities(tempEntity.exists()
+                ? Collections.singleton(tempEntity) : Collections.<EntityRef>emptySet());
+        return success;
     }
 
-    private boolean moveItemToSlotsFillClientTempEntities(EntityRef instigator, EntityRef fromInventory, int slotFrom,
-            EntityRef toInventory, List<Integer> toSlots, Collection<EntityRef> clientTempEntities) {
-        Set<Integer> emptySlotsBefore = new HashSet<>();
-        for (Integer toSlot : toSlots) {
-            if (!InventoryUtils.getItemAt(toInventory, toSlot).exists()) {
-                emptySlotsBefore.add(toSlot);
+    /**
+     * A move that has not been acknowledged by the server yet, with the slots its prediction changed.
+     */
+    private final class PendingMove {
+        private final AbstractMoveItemRequest request;
+        private final List<Slot> slots = new ArrayList<>();
+        private List<SlotState> before = Collections.emptyList();
+        private List<SlotState> after = Collections.emptyList();
+        private EntityRef tempEntity = EntityRef.NULL;
+
+        PendingMove(AbstractMoveItemRequest request) {
+            this.request = request;
+            slots.add(new Slot(request.getFromInventory(), request.getFromSlot()));
+            if (request instanceof MoveItemRequest) {
+                slots.add(new Slot(request.getToInventory(), ((MoveItemRequest) request).getToSlot()));
+            } else if (request instanceof MoveItemAmountRequest) {
+                slots.add(new Slot(request.getToInventory(), ((MoveItemAmountRequest) request).getToSlot()));
+            } else if (request instanceof MoveItemToSlotsRequest) {
+                for (int slot : ((MoveItemToSlotsRequest) request).getToSlots()) {
+                    slots.add(new Slot(request.getToInventory(), slot));
+                }
             }
         }
 
-        if (!InventoryUtils.moveItemToSlots(instigator, fromInventory, slotFrom, toInventory, toSlots)) {
-            return true;
+        List<SlotState> capture() {
+            List<SlotState> states = new ArrayList<>(slots.size());
+            for (Slot slot : slots) {
+                states.add(new SlotState(slot.getItem()));
+            }
+            return states;
         }
 
-        for (Integer slot : emptySlotsBefore) {
-            EntityRef itemAt = InventoryUtils.getItemAt(toInventory, slot);
-            if (itemAt.exists()) {
-                clientTempEntities.add(itemAt);
+        void retireTempEntity() {
+            if (tempEntity.exists()) {
+                retiredTempEntities.put(tempEntity, slots.get(1));
             }
+            tempEntity = EntityRef.NULL;
         }
-        return false;
     }
 
-    @Override
-    public boolean switchItem(EntityRef fromInventory, EntityRef instigator, int slotFrom, EntityRef toInventory, int slotTo) {
-        Collection<EntityRef> clientTempEntities = new HashSet<>();
-        if (moveItemFillClientTempEntities(fromInventory, instigator, slotFrom, toInventory, slotTo, clientTempEntities)) {
-            return false;
+    private static final class Slot {
+        private final EntityRef inventory;
+        private final int index;
+
+        Slot(EntityRef inventory, int index) {
+            this.inventory = inventory;
+            this.index = index;
         }
 
-        MoveItemRequest request = new MoveItemRequest(instigator, fromInventory, slotFrom, toInventory, slotTo, changeId++, clientTempEntities);
-        pendingMoves.put(request.getChangeId(), request);
-        localPlayer.getClientEntity().send(request);
+        EntityRef getItem() {
+            return InventoryUtils.getItemAt(inventory, index);
+        }
 
-        return true;
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Slot)) {
+                return false;
+            }
+            Slot other = (Slot) o;
+            return index == other.index && inventory.equals(other.inventory);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * inventory.hashCode() + index;
+        }
     }
 
-    private boolean moveItemFillClientTempEntities(EntityRef fromInventory, EntityRef instigator, int slotFrom,
-            EntityRef toInventory, int slotTo, Collection<EntityRef> clientTempEntities) {
-        boolean slotFromEmpty = !InventoryUtils.getItemAt(fromInventory, slotFrom).exists();
-        boolean slotToEmpty = !InventoryUtils.getItemAt(toInventory, slotTo).exists();
-        if (!InventoryUtils.moveItem(instigator, fromInventory, slotFrom, toInventory, slotTo)) {
-            return true;
+    /**
+     * The item in a slot and its stack size at some point.
+     */
+    private static final class SlotState {
+        private final EntityRef item;
+        private final int stackCount;
+
+        SlotState(EntityRef item) {
+            this.item = item;
+            this.stackCount = InventoryUtils.getStackCount(item);
         }
 
-        if (slotFromEmpty) {
-            EntityRef itemAt = InventoryUtils.getItemAt(fromInventory, slotFrom);
-            if (itemAt.exists()) {
-                clientTempEntities.add(itemAt);
-            }
+        boolean matches(Slot slot) {
+            EntityRef current = slot.getItem();
+            return current.equals(item) && InventoryUtils.getStackCount(current) == stackCount;
         }
-        if (slotToEmpty) {
-            EntityRef itemAt = InventoryUtils.getItemAt(toInventory, slotTo);
-            if (itemAt.exists()) {
-                clientTempEntities.add(itemAt);
+
+        void restore(InventoryTransaction transaction, Slot slot) {
+            transaction.putItemIntoSlot(slot.inventory, item, slot.index);
+            if (item.exists() && InventoryUtils.getStackCount(item) != stackCount) {
+                transaction.adjustStackSize(slot.inventory, slot.index, stackCount);
             }
         }
-        return false;
     }
 }
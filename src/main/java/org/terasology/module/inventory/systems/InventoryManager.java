@@ -4,6 +4,8 @@
 package org.terasology.module.inventory.systems;
 
 import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.prefab.Prefab;
+import org.terasology.engine.world.block.family.BlockFamily;
 
 import java.util.List;
 
@@ -42,6 +44,20 @@ public interface InventoryManager {
      */
     int getNumSlots(EntityRef inventoryEntity);
 
+    /**
+     * @param inventoryEntity
+     * @param prefab
+     * @return The number of items created from the given prefab in the inventory, summed over all stacks
+     */
+    int countByPrefab(EntityRef inventoryEntity, Prefab prefab);
+
+    /**
+     * @param inventoryEntity
+     * @param blockFamily
+     * @return The number of block items of the given block family in the inventory, summed over all stacks
+     */
+    int countByBlockFamily(EntityRef inventoryEntity, BlockFamily blockFamily);
+
     /**
      * Puts item into an inventory.
      *
@@ -74,6 +90,19 @@ public interface InventoryManager {
      */
     boolean giveItem(EntityRef inventory, EntityRef instigator, EntityRef item, List<Integer> slots);
 
+    /**
+     * Puts a number of items of a prefab into an inventory, topping up stacks of the same item before filling empty
+     * slots. Only one item entity is created per empty slot filled, no matter how many items go into it.
+     *
+     * @param inventory  Inventory to put the items into.
+     * @param instigator Instigator of the action.
+     * @param prefab     Prefab of the items to put into the inventory.
+     * @param count      Number of items to put into the inventory.
+     * @param slots      Range of slots to put the items into, or null for all slots.
+     * @return The number of items that did not fit into the inventory.
+     */
+    int giveItems(EntityRef inventory, EntityRef instigator, Prefab prefab, int count, List<Integer> slots);
+
     /**
      * Removes whole stack of item from an inventory.
      *
@@ -136,6 +165,37 @@ public interface InventoryManager {
      */
     EntityRef removeItem(EntityRef inventory, EntityRef instigator, int slotNo, boolean destroyRemoved, int count);
 
+    /**
+     * Removes the specified amount of items created from a prefab from an inventory, starting with the last slot
+     * holding one. Nothing is removed unless all of them can be.
+     *
+     * @param inventory      Inventory to remove the items from.
+     * @param instigator     Instigator of the action.
+     * @param prefab         Parent prefab of the items to remove.
+     * @param count          Amount of items to remove.
+     * @param destroyRemoved If the removed items should be destroyed.
+     * @return If there are fewer items or removing some was vetoed - <code>null</code> value will be returned. If
+     *         successful and destroyRemoved is true - EntityRef.NULL will be returned, otherwise a single entity holding
+     *         all removed items will be returned instead.
+     */
+    EntityRef removeByPrefab(EntityRef inventory, EntityRef instigator, Prefab prefab, int count, boolean destroyRemoved);
+
+    /**
+     * Removes the specified amount of block items of a block family from an inventory, starting with the last slot
+     * holding one. Nothing is removed unless all of them can be.
+     *
+     * @param inventory      Inventory to remove the items from.
+     * @param instigator     Instigator of the action.
+     * @param blockFamily    Block family of the block items to remove.
+     * @param count          Amount of items to remove.
+     * @param destroyRemoved If the removed items should be destroyed.
+     * @return If there are fewer items or removing some was vetoed - <code>null</code> value will be returned. If
+     *         successful and destroyRemoved is true - EntityRef.NULL will be returned, otherwise a single entity holding
+     *         all removed items will be returned instead.
+     */
+    EntityRef removeByBlockFamily(EntityRef inventory, EntityRef instigator, BlockFamily blockFamily, int count,
+                                  boolean destroyRemoved);
+
     /**
      * Moves a specified amount of items from one inventory to another.
      *
@@ -173,4 +233,16 @@ public interface InventoryManager {
      * @return If the action was successful.
      */
     boolean switchItem(EntityRef fromInventory, EntityRef instigator, int slotFrom, EntityRef toInventory, int slotTo);
+
+    /**
+     * Opens a transaction that all following inventory operations join until it is committed or rolled back.
+     * <p>
+     * Operations staged in the transaction change the inventories right away, but the changed components are saved
+     * and the slot change events are sent only once the transaction is committed.
+     * A transaction begun while another one is open is nested in it: committing it leaves the changes to be committed
+     * with the enclosing transaction, and rolling it back only undoes the changes made since it was begun.
+     *
+     * @return The opened transaction.
+     */
+    InventoryTransaction beginTransaction();
 }
@@ -0,0 +1,43 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.systems;
+
+/**
+ * Collects how often the inventory operations of the {@link InventoryManager} run on the authority, how long they take
+ * and how much work they cause.
+ */
+public interface InventoryMetrics {
+
+    enum Operation {
+        GIVE,
+        REMOVE,
+        MOVE,
+        MOVE_TO_SLOTS,
+        SWITCH
+    }
+
+    /**
+     * Record one run of an operation.
+     *
+     * @param operation the operation that ran
+     * @param durationNanos how long it took, including committing its changes
+     * @param succeeded whether it succeeded
+     * @param vetoed whether a veto event was consumed while it ran
+     * @param eventsSent how many events it sent
+     * @param componentsSaved how many components it saved
+     */
+    void record(Operation operation, long durationNanos, boolean succeeded, boolean vetoed, int eventsSent,
+                int componentsSaved);
+
+    /**
+     * @param operation the operation to get the statistics of
+     * @return the statistics recorded for the operation since the last reset
+     */
+    OperationStats getStats(Operation operation);
+
+    /**
+     * Discard all statistics recorded so far.
+     */
+    void reset();
+}
@@ -0,0 +1,65 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.systems;
+
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterMode;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.registry.Share;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@RegisterSystem(RegisterMode.AUTHORITY)
+@Share(InventoryMetrics.class)
+public class InventoryMetricsSystem extends BaseComponentSystem implements InventoryMetrics {
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+
+    public InventoryMetricsSystem() {
+        reset();
+    }
+
+    @Override
+    public synchronized void record(Operation operation, long durationNanos, boolean succeeded, boolean vetoed,
+                                    int eventsSent, int componentsSaved) {
+        Recorder recorder = recorders.get(operation);
+        recorder.count++;
+        if (!succeeded) {
+            recorder.failures++;
+        }
+        if (vetoed) {
+            recorder.vetoes++;
+        }
+        recorder.totalNanos += durationNanos;
+        recorder.maxNanos = Math.max(recorder.maxNanos, durationNanos);
+        recorder.eventsSent += eventsSent;
+        recorder.componentsSaved += componentsSaved;
+        recorder.histogram[OperationStats.bucketOf(durationNanos)]++;
+    }
+
+    @Override
+    public synchronized OperationStats getStats(Operation operation) {
+        Recorder recorder = recorders.get(operation);
+        return new OperationStats(recorder.count, recorder.failures, recorder.vetoes, recorder.totalNanos,
+                recorder.maxNanos, recorder.eventsSent, recorder.componentsSaved, recorder.histogram);
+    }
+
+    @Override
+    public synchronized void reset() {
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder());
+        }
+    }
+
+    private static final class Recorder {
+        private long count;
+        private long failures;
+        private long vetoes;
+        private long totalNanos;
+        private long maxNanos;
+        private long eventsSent;
+        private long componentsSaved;
+        private final long[] histogram = new long[OperationStats.BUCKETS];
+    }
+}
@@ -0,0 +1,208 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.systems;
+
+import org.terasology.engine.entitySystem.entity.EntityManager;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.BeforeDeactivateComponent;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.OnActivatedComponent;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.OnChangedComponent;
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterMode;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.entitySystem.systems.UpdateSubscriberSystem;
+import org.terasology.engine.logic.characters.CharacterComponent;
+import org.terasology.engine.network.ClientComponent;
+import org.terasology.engine.network.NetworkSystem;
+import org.terasology.engine.registry.In;
+import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
+import org.terasology.module.inventory.components.InventoryComponent;
+import org.terasology.module.inventory.events.InventorySlotsDeltaEvent;
+import org.terasology.module.inventory.events.OwnerInventorySlotsDeltaEvent;
+import org.terasology.module.inventory.events.ViewedInventorySlotsEvent;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replicates changes to the slots of inventories with {@link InventoryComponent#replicateSlotDeltas} set as
+ * {@link InventorySlotsDeltaEvent}s holding only the changed slots.
+ * <p>
+ * The whole slot list is replicated instead if slots were added or removed, and after every
+ * {@link #DELTAS_PER_SNAPSHOT} deltas so that clients recover from any change they missed. Such a full snapshot is
+ * requested from {@link InventoryComponent#shouldReplicate} until the second update after the change, by which time
+ * the network system has sent it. Changes made meanwhile are still sent as deltas, as there is no telling whether the
+ * snapshot has been sent before them.
+ * <p>
+ * Inventories with {@link InventoryComponent#replicateToViewers} set are only replicated to the clients that have them
+ * as interaction target, which are looked up on every update. A client gets all slots when it starts viewing the
+ * inventory and the changed slots from then on, as {@link ViewedInventorySlotsEvent}s. Other clients only get the
+ * summary fields of the component, except for the owner, which gets the slots as deltas and snapshots as described
+ * above.
+ */
+@RegisterSystem(RegisterMode.AUTHORITY)
+public class InventoryReplicationSystem extends BaseComponentSystem implements UpdateSubscriberSystem {
+    static final int DELTAS_PER_SNAPSHOT = 32;
+
+    @In
+    private NetworkSystem networkSystem;
+
+    @In
+    private EntityManager entityManager;
+
+    private final Map<EntityRef, Integer> deltasSinceSnapshot = new HashMap<>();
+    private Set<EntityRef> snapshotsRequested = new HashSet<>();
+    private Set<EntityRef> snapshotsSent = new HashSet<>();
+
+    /**
+     * The client entities viewing each inventory replicated to viewers.
+     */
+    private Map<EntityRef, Set<EntityRef>> viewers = new HashMap<>();
+
+    public void setNetworkSystem(NetworkSystem networkSystem) {
+        this.networkSystem = networkSystem;
+    }
+
+    public void setEntityManager(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @ReceiveEvent
+    public void onInventoryActivated(OnActivatedComponent event, EntityRef entity, InventoryComponent inventory) {
+        if (inventory.replicateToViewers && updateSummary(inventory)) {
+            entity.saveComponent(inventory);
+        }
+    }
+
+    @ReceiveEvent
+    public void onInventoryChanged(OnChangedComponent event, EntityRef entity, InventoryComponent inventory) {
+        boolean summaryChanged = inventory.replicateToViewers && updateSummary(inventory);
+        if ((inventory.replicateToViewers || inventory.replicateSlotDeltas) && networkSystem.getMode().isServer()) {
+            BitSet changedSlots = inventory.drainChangedSlots();
+            if (inventory.replicateToViewers) {
+                sendToViewers(entity, inventory, changedSlots);
+            }
+            if (inventory.replicateSlotDeltas) {
+                replicateToOwners(entity, inventory, changedSlots);
+            }
+        }
+        if (summaryChanged) {
+            // the change event this causes finds the summary up to date and no changed slots left
+            entity.saveComponent(inventory);
+        }
+    }
+
+    /**
+     * Send the changed slots as delta, or request a snapshot of all slots instead, to the clients the component itself
+     * is replicated to: all relevant ones, or only the owner if the inventory is private or replicated to viewers.
+     *
+     * @param changedSlots the slots that changed, or null if there is no telling
+     */
+    private void replicateToOwners(EntityRef entity, InventoryComponent inventory, BitSet changedSlots) {
+        if (changedSlots != null && changedSlots.isEmpty()) {
+            return;
+        }
+
+        int deltas = deltasSinceSnapshot.getOrDefault(entity, 0) + 1;
+        boolean snapshotPending = snapshotsRequested.contains(entity) || snapshotsSent.contains(entity);
+        if (changedSlots == null || deltas > DELTAS_PER_SNAPSHOT && !snapshotPending) {
+            inventory.setReplicateAllSlots(true);
+            snapshotsRequested.add(entity);
+            deltasSinceSnapshot.remove(entity);
+        } else {
+            deltasSinceSnapshot.put(entity, deltas);
+            if (inventory.privateToOwner || inventory.replicateToViewers) {
+                entity.send(new OwnerInventorySlotsDeltaEvent(inventory.itemSlots, changedSlots));
+            } else {
+                entity.send(new InventorySlotsDeltaEvent(inventory.itemSlots, changedSlots));
+            }
+        }
+    }
+
+    @ReceiveEvent(components = InventoryComponent.class)
+    public void onInventoryDeactivated(BeforeDeactivateComponent event, EntityRef entity) {
+        deltasSinceSnapshot.remove(entity);
+        snapshotsRequested.remove(entity);
+        snapshotsSent.remove(entity);
+        viewers.remove(entity);
+    }
+
+    /**
+     * @return whether the summary fields changed, so that the component has to be saved for them to be replicated
+     */
+    private boolean updateSummary(InventoryComponent inventory) {
+        int slotCount = inventory.itemSlots.size();
+        int filledSlots = slotCount - inventory.findEmptySlots(null).size();
+        if (inventory.slotCount == slotCount && inventory.filledSlots == filledSlots) {
+            return false;
+        }
+        inventory.slotCount = slotCount;
+        inventory.filledSlots = filledSlots;
+        return true;
+    }
+
+    /**
+     * @param changedSlots the slots to send, or null to send all of them
+     */
+    private void sendToViewers(EntityRef entity, InventoryComponent inventory, BitSet changedSlots) {
+        Set<EntityRef> clients = viewers.get(entity);
+        if (clients == null || changedSlots != null && changedSlots.isEmpty()) {
+            return;
+        }
+        BitSet slots = changedSlots != null ? changedSlots : allSlots(inventory);
+        for (EntityRef client : clients) {
+            client.send(new ViewedInventorySlotsEvent(entity, inventory.itemSlots, slots));
+        }
+    }
+
+    private void updateViewers() {
+        Map<EntityRef, Set<EntityRef>> currentViewers = new HashMap<>();
+        for (EntityRef client : entityManager.getEntitiesWith(ClientComponent.class)) {
+            ClientComponent clientComponent = client.getComponent(ClientComponent.class);
+            CharacterComponent character = clientComponent.character.getComponent(CharacterComponent.class);
+            if (clientComponent.local || character == null) {
+                continue;
+            }
+            EntityRef target = character.authorizedInteractionTarget;
+            InventoryComponent inventory = target.getComponent(InventoryComponent.class);
+            if (inventory == null || !inventory.replicateToViewers) {
+                continue;
+            }
+            currentViewers.computeIfAbsent(target, k -> new HashSet<>()).add(client);
+            Set<EntityRef> previousViewers = viewers.get(target);
+            if (previousViewers == null || !previousViewers.contains(client)) {
+                client.send(new ViewedInventorySlotsEvent(target, inventory.itemSlots, allSlots(inventory)));
+            }
+        }
+        viewers = currentViewers;
+    }
+
+    private static BitSet allSlots(InventoryComponent inventory) {
+        BitSet slots = new BitSet();
+        slots.set(0, inventory.itemSlots.size());
+        return slots;
+    }
+
+    @Override
+    public void update(float delta) {
+        if (networkSystem.getMode().isServer()) {
+            updateViewers();
+        }
+
+        for (EntityRef entity : snapshotsSent) {
+            InventoryComponent inventory = entity.getComponent(InventoryComponent.class);
+            if (inventory != null && !snapshotsRequested.contains(entity)) {
+                inventory.setReplicateAllSlots(false);
+            }
+        }
+        snapshotsSent.clear();
+
+        Set<EntityRef> swap = snapshotsSent;
+        snapshotsSent = snapshotsRequested;
+        snapshotsRequested = swap;
+    }
+}
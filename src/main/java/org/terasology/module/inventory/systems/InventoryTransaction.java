@@ -0,0 +1,450 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.systems;
+
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.event.AbstractConsumableEvent;
+import org.terasology.engine.logic.inventory.ItemComponent;
+import org.terasology.gestalt.entitysystem.event.Event;
+import org.terasology.module.inventory.components.InventoryComponent;
+import org.terasology.module.inventory.events.InventorySlotChangedEvent;
+import org.terasology.module.inventory.events.InventorySlotStackSizeChangedEvent;
+import org.terasology.module.inventory.events.InventorySlotsChangedEvent;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stages changes to inventory slots and stack sizes, so that they are saved and announced together.
+ * <p>
+ * Changes are applied to the components right away, so that later steps of an operation see them, but the components
+ * are only saved on {@link #commit()}: once per touched inventory and item, no matter how often it was changed. The
+ * {@link InventorySlotChangedEvent}s and {@link InventorySlotStackSizeChangedEvent}s describing the changes are sent
+ * afterwards in the order the changes were made, followed by one {@link InventorySlotsChangedEvent} per touched
+ * inventory that {@link InventoryComponent#sendSlotsChangedEvents asks for it}. Items destroyed within the transaction
+ * are destroyed last.
+ * <p>
+ * Until then, changes can be undone with {@link #rollback()}, or back to a {@link #savepoint()} with
+ * {@link #rollbackTo(int)}, e.g. when a veto event is consumed halfway through an operation. Items created within the
+ * transaction and registered with {@link #destroyOnRollback(EntityRef)} are destroyed when it is rolled back.
+ * <p>
+ * Transactions are obtained from {@link InventoryManager#beginTransaction()}. Closing a transaction that has not been
+ * committed rolls it back, so it can be used in a try-with-resources block that commits at its end.
+ * <p>
+ * A transaction begun while another one is open is nested in it: committing the nested transaction leaves its changes
+ * to be committed with the enclosing one, while rolling it back only undoes the changes made since it was begun.
+ */
+public final class InventoryTransaction implements AutoCloseable {
+    private final List<Change> changes;
+    private final Runnable onClose;
+    /**
+     * The transaction this one is nested in, or null if it is not nested.
+     */
+    private final InventoryTransaction parent;
+    /**
+     * The index of the first change belonging to this transaction in the changes shared with the enclosing ones.
+     */
+    private final int firstChange;
+    private boolean closed;
+
+    private int sentEvents;
+    private int vetoes;
+    private int savedComponents;
+
+    InventoryTransaction() {
+        this(() -> { });
+    }
+
+    /**
+     * @param onClose called once the transaction has been committed or rolled back
+     */
+    InventoryTransaction(Runnable onClose) {
+        this.changes = new ArrayList<>();
+        this.onClose = onClose;
+        this.parent = null;
+        this.firstChange = 0;
+    }
+
+    private InventoryTransaction(InventoryTransaction parent) {
+        this.changes = parent.changes;
+        this.onClose = () -> { };
+        this.parent = parent;
+        this.firstChange = parent.changes.size();
+    }
+
+    /**
+     * @return a transaction nested in this one, staging its changes in this one as they are made
+     */
+    InventoryTransaction nest() {
+        checkOpen();
+        return new InventoryTransaction(this);
+    }
+
+    /**
+     * Put an item into a slot of an inventory, replacing whatever was in there before.
+     *
+     * @param entity the entity holding the inventory
+     * @param item the item to put into the slot, {@link EntityRef#NULL} to empty it
+     * @param slot the slot to change
+     */
+    public void putItemIntoSlot(EntityRef entity, EntityRef item, int slot) {
+        checkOpen();
+        InventoryComponent inventory = entity.getComponent(InventoryComponent.class);
+        EntityRef oldItem = inventory.itemSlots.set(slot, item);
+        changes.add(new SlotChange(entity, inventory, slot, oldItem, item));
+    }
+
+    /**
+     * Change the stack size of the item in a slot of an inventory.
+     *
+     * @param entity the entity holding the inventory
+     * @param slot the slot holding the item
+     * @param newCount the new stack size of the item
+     */
+    public void adjustStackSize(EntityRef entity, int slot, int newCount) {
+        checkOpen();
+        InventoryComponent inventory = entity.getComponent(InventoryComponent.class);
+        EntityRef item = inventory.itemSlots.get(slot);
+        changes.add(new StackChange(entity, inventory, slot, item, item.getComponent(ItemComponent.class), newCount));
+    }
+
+    /**
+     * Change the stack size of an item that is not in an inventory. No event is sent for this.
+     *
+     * @param item the item to change
+     * @param newCount the new stack size of the item
+     */
+    public void setStackCount(EntityRef item, int newCount) {
+        checkOpen();
+        changes.add(new StackChange(null, null, -1, item, item.getComponent(ItemComponent.class), newCount));
+    }
+
+    /**
+     * Destroy an item once the transaction is committed.
+     *
+     * @param item the item to destroy
+     */
+    public void destroy(EntityRef item) {
+        checkOpen();
+        changes.add(new Destruction(item));
+    }
+
+    /**
+     * Destroy an item created within the transaction should the transaction be rolled back past this point, e.g. the
+     * new stack an item has been split into.
+     *
+     * @param item the item that has been created
+     */
+    public void destroyOnRollback(EntityRef item) {
+        checkOpen();
+        changes.add(new Creation(item));
+    }
+
+    /**
+     * Send an event to an entity on behalf of the operations in this transaction, e.g. to ask whether a change is
+     * allowed.
+     *
+     * @return the event after it has been sent
+     */
+    <T extends Event> T send(EntityRef entity, T event) {
+        if (parent != null) {
+            return parent.send(entity, event);
+        }
+        sentEvents++;
+        entity.send(event);
+        if (event instanceof AbstractConsumableEvent && ((AbstractConsumableEvent) event).isConsumed()) {
+            vetoes++;
+        }
+        return event;
+    }
+
+    /**
+     * @return how many events have been sent within this transaction so far
+     */
+    int getSentEvents() {
+        return sentEvents;
+    }
+
+    /**
+     * @return how many of the sent events have been consumed so far, i.e. vetoed a change
+     */
+    int getVetoes() {
+        return vetoes;
+    }
+
+    /**
+     * @return how many components have been saved by committing this transaction
+     */
+    int getSavedComponents() {
+        return savedComponents;
+    }
+
+    /**
+     * @return a savepoint to pass to {@link #rollbackTo(int)} to undo all changes made from now on
+     */
+    public int savepoint() {
+        checkOpen();
+        return changes.size();
+    }
+
+    /**
+     * Undo all changes made since the given savepoint, keeping the transaction open.
+     *
+     * @param savepoint a savepoint obtained from {@link #savepoint()} of this transaction
+     */
+    public void rollbackTo(int savepoint) {
+        checkOpen();
+        if (savepoint < firstChange || savepoint > changes.size()) {
+            throw new IllegalArgumentException("Invalid savepoint " + savepoint + " for " + changes.size() + " changes");
+        }
+        for (int i = changes.size() - 1; i >= savepoint; i--) {
+            changes.remove(i).undo();
+        }
+    }
+
+    /**
+     * Undo all changes and close the transaction.
+     */
+    public void rollback() {
+        rollbackTo(firstChange);
+        finish();
+    }
+
+    /**
+     * Save all touched components, send the events describing the changes, destroy the items destroyed within the
+     * transaction, and close the transaction. A nested transaction leaves all of this to the enclosing one.
+     */
+    public void commit() {
+        checkOpen();
+        finish();
+        if (parent != null) {
+            return;
+        }
+
+        Map<EntityRef, InventoryComponent> inventories = new LinkedHashMap<>();
+        Map<EntityRef, ItemComponent> items = new LinkedHashMap<>();
+        Set<EntityRef> destroyedItems = new LinkedHashSet<>();
+        Map<EntityRef, ChangedSlots> changedSlots = new LinkedHashMap<>();
+        for (Change change : changes) {
+            change.collect(inventories, items, destroyedItems);
+            change.collectSlots(changedSlots);
+        }
+
+        for (Map.Entry<EntityRef, InventoryComponent> inventory : inventories.entrySet()) {
+            inventory.getKey().saveComponent(inventory.getValue());
+            savedComponents++;
+        }
+        for (Map.Entry<EntityRef, ItemComponent> item : items.entrySet()) {
+            if (!destroyedItems.contains(item.getKey())) {
+                item.getKey().saveComponent(item.getValue());
+                savedComponents++;
+            }
+        }
+        for (Change change : changes) {
+            change.announce(this);
+        }
+        for (Map.Entry<EntityRef, ChangedSlots> inventory : changedSlots.entrySet()) {
+            ChangedSlots slots = inventory.getValue();
+            send(inventory.getKey(), new InventorySlotsChangedEvent(slots.slots, slots.oldItems, slots.newItems));
+        }
+        for (EntityRef item : destroyedItems) {
+            item.destroy();
+        }
+    }
+
+    /**
+     * Roll the transaction back unless it has already been committed or rolled back.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            rollback();
+        }
+    }
+
+    private void finish() {
+        closed = true;
+        onClose.run();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The inventory transaction has already been closed");
+        }
+        if (parent != null) {
+            parent.checkOpen();
+        }
+    }
+
+    private abstract static class Change {
+        abstract void undo();
+
+        abstract void collect(Map<EntityRef, InventoryComponent> inventories, Map<EntityRef, ItemComponent> items,
+                              Set<EntityRef> destroyedItems);
+
+        void collectSlots(Map<EntityRef, ChangedSlots> changedSlots) {
+        }
+
+        void announce(InventoryTransaction transaction) {
+        }
+    }
+
+    /**
+     * The net change of the slots of one inventory.
+     */
+    private static final class ChangedSlots {
+        private final BitSet slots = new BitSet();
+        private final Map<Integer, EntityRef> oldItems = new HashMap<>();
+        private final Map<Integer, EntityRef> newItems = new HashMap<>();
+
+        void record(int slot, EntityRef oldItem, EntityRef newItem) {
+            if (!slots.get(slot)) {
+                slots.set(slot);
+                oldItems.put(slot, oldItem);
+            }
+            newItems.put(slot, newItem);
+        }
+    }
+
+    private static final class SlotChange extends Change {
+        private final EntityRef entity;
+        private final InventoryComponent inventory;
+        private final int slot;
+        private final EntityRef oldItem;
+        private final EntityRef newItem;
+
+        SlotChange(EntityRef entity, InventoryComponent inventory, int slot, EntityRef oldItem, EntityRef newItem) {
+            this.entity = entity;
+            this.inventory = inventory;
+            this.slot = slot;
+            this.oldItem = oldItem;
+            this.newItem = newItem;
+        }
+
+        @Override
+        void undo() {
+            inventory.itemSlots.set(slot, oldItem);
+        }
+
+        @Override
+        void collect(Map<EntityRef, InventoryComponent> inventories, Map<EntityRef, ItemComponent> items,
+                     Set<EntityRef> destroyedItems) {
+            inventories.put(entity, inventory);
+        }
+
+        @Override
+        void collectSlots(Map<EntityRef, ChangedSlots> changedSlots) {
+            if (inventory.sendSlotsChangedEvents) {
+                changedSlots.computeIfAbsent(entity, k -> new ChangedSlots()).record(slot, oldItem, newItem);
+            }
+        }
+
+        @Override
+        void announce(InventoryTransaction transaction) {
+            transaction.send(entity, new InventorySlotChangedEvent(slot, oldItem, newItem));
+        }
+    }
+
+    private static final class StackChange extends Change {
+        /**
+         * The entity holding the inventory the item is in and that inventory, or null if it isn't in one.
+         */
+        private final EntityRef entity;
+        private final InventoryComponent inventory;
+        private final int slot;
+        private final EntityRef item;
+        private final ItemComponent itemComponent;
+        private final byte oldSize;
+        private final int newSize;
+
+        StackChange(EntityRef entity, InventoryComponent inventory, int slot, EntityRef item, ItemComponent itemComponent,
+                    int newSize) {
+            this.entity = entity;
+            this.inventory = inventory;
+            this.slot = slot;
+            this.item = item;
+            this.itemComponent = itemComponent;
+            this.oldSize = itemComponent.stackCount;
+            this.newSize = newSize;
+            itemComponent.stackCount = (byte) newSize;
+            refreshSlot();
+        }
+
+        @Override
+        void undo() {
+            itemComponent.stackCount = oldSize;
+            refreshSlot();
+        }
+
+        private void refreshSlot() {
+            if (inventory != null) {
+                inventory.refreshSlot(slot);
+            }
+        }
+
+        @Override
+        void collect(Map<EntityRef, InventoryComponent> inventories, Map<EntityRef, ItemComponent> items,
+                     Set<EntityRef> destroyedItems) {
+            items.put(item, itemComponent);
+        }
+
+        @Override
+        void collectSlots(Map<EntityRef, ChangedSlots> changedSlots) {
+            if (inventory != null && inventory.sendSlotsChangedEvents) {
+                changedSlots.computeIfAbsent(entity, k -> new ChangedSlots()).record(slot, item, item);
+            }
+        }
+
+        @Override
+        void announce(InventoryTransaction transaction) {
+            if (entity != null) {
+                transaction.send(entity, new InventorySlotStackSizeChangedEvent(slot, oldSize, newSize));
+            }
+        }
+    }
+
+    private static final class Destruction extends Change {
+        private final EntityRef item;
+
+        Destruction(EntityRef item) {
+            this.item = item;
+        }
+
+        @Override
+        void undo() {
+        }
+
+        @Override
+        void collect(Map<EntityRef, InventoryComponent> inventories, Map<EntityRef, ItemComponent> items,
+                     Set<EntityRef> destroyedItems) {
+            destroyedItems.add(item);
+        }
+    }
+
+    private static final class Creation extends Change {
+        private final EntityRef item;
+
+        Creation(EntityRef item) {
+            this.item = item;
+        }
+
+        @Override
+        void undo() {
+            if (item.exists()) {
+                item.destroy();
+            }
+        }
+
+        @Override
+        void collect(Map<EntityRef, InventoryComponent> inventories, Map<EntityRef, ItemComponent> items,
+                     Set<EntityRef> destroyedItems) {
+        }
+    }
+}
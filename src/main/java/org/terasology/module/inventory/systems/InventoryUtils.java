@@ -4,37 +4,51 @@
 package org.terasology.module.inventory.systems;
 
 import org.joml.Vector3f;
+import org.terasology.engine.entitySystem.ComponentContainer;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.entitySystem.prefab.Prefab;
 import org.terasology.engine.logic.inventory.ItemComponent;
 import org.terasology.engine.logic.players.LocalPlayer;
+import org.terasology.engine.world.block.family.BlockFamily;
 import org.terasology.gestalt.entitysystem.component.Component;
 import org.terasology.module.inventory.components.InventoryComponent;
 import org.terasology.module.inventory.components.ItemDifferentiating;
 import org.terasology.module.inventory.events.BeforeItemPutInInventory;
 import org.terasology.module.inventory.events.BeforeItemRemovedFromInventory;
 import org.terasology.module.inventory.events.DropItemRequest;
-import org.terasology.module.inventory.events.InventorySlotChangedEvent;
-import org.terasology.module.inventory.events.InventorySlotStackSizeChangedEvent;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 public final class InventoryUtils {
+    /**
+     * The component classes implementing {@link ItemDifferentiating}, or null if they are not known (yet).
+     */
+    private static volatile List<Class<? extends Component>> differentiatingComponents;
+
     private InventoryUtils() {
     }
 
+    /**
+     * Set the component classes implementing {@link ItemDifferentiating}.
+     * <p>
+     * While these are not known, items are compared by iterating all of their components.
+     *
+     * @param componentClasses all component classes implementing {@link ItemDifferentiating}, or null if unknown
+     */
+    static void setDifferentiatingComponents(List<Class<? extends Component>> componentClasses) {
+        differentiatingComponents = componentClasses != null
+                ? Collections.unmodifiableList(new ArrayList<>(componentClasses))
+                : null;
+    }
+
     public static int getSlotWithItem(EntityRef entity, EntityRef item) {
-        int slotCount = getSlotCount(entity);
-        for (int i = 0; i < slotCount; i++) {
-            if (getItemAt(entity, i) == item) {
-                return i;
-            }
+        InventoryComponent inventory = entity.getComponent(InventoryComponent.class);
+        if (inventory == null) {
+            return -1;
         }
-        return -1;
+        return inventory.findSlot(item);
     }
 
     public static int getStackCount(EntityRef item) {
@@ -53,6 +67,28 @@ public final class InventoryUtils {
         return inventory.itemSlots.size();
     }
 
+    /**
+     * @return the number of items created from the given prefab in the inventory of the entity
+     */
+    public static int countItems(EntityRef entity, Prefab prefab) {
+        InventoryComponent inventory = entity.getComponent(InventoryComponent.class);
+        if (inventory == null) {
+            return 0;
+        }
+        return inventory.countItemsWithPrefab(prefab);
+    }
+
+    /**
+     * @return the number of block items of the given block family in the inventory of the entity
+     */
+    public static int countItems(EntityRef entity, BlockFamily blockFamily) {
+        InventoryComponent inventory = entity.getComponent(InventoryComponent.class);
+        if (inventory == null) {
+            return 0;
+        }
+        return inventory.countItemsWithBlockFamily(blockFamily);
+    }
+
     public static EntityRef getItemAt(EntityRef entity, int slot) {
         InventoryComponent inventory = entity.getComponent(InventoryComponent.class);
         if (inventory == null || slot < 0 || slot >= inventory.itemSlots.size()) {
@@ -77,6 +113,25 @@ public final class InventoryUtils {
     }
 
     public static boolean isSameItem(EntityRef item1, EntityRef item2) {
+        return isSameItem((ComponentContainer) item1, item2);
+    }
+
+    /**
+     * Check whether an item created from the prefab would be the same item as the given one, i.e. could share a stack
+     * with it, without creating an entity for it.
+     * <p>
+     * This allows adding items of a prefab to existing stacks by their count alone, so only the items that end up in
+     * a slot of their own have to become entities.
+     *
+     * @param prefab the prefab of the item
+     * @param item the item to compare with
+     * @return true iff both have the same stack id and equal {@link ItemDifferentiating} components
+     */
+    public static boolean isSameItem(Prefab prefab, EntityRef item) {
+        return isSameItem((ComponentContainer) prefab, item);
+    }
+
+    private static boolean isSameItem(ComponentContainer item1, ComponentContainer item2) {
         ItemComponent itemComp1 = item1.getComponent(ItemComponent.class);
         ItemComponent itemComp2 = item2.getComponent(ItemComponent.class);
 
@@ -87,37 +142,44 @@ public final class InventoryUtils {
         return isSameStackId(itemComp1, itemComp2) && hasSameAttributes(item1, item2);
     }
 
-    private static boolean hasSameAttributes(EntityRef from, EntityRef to) {
-        Set<Component> differentiatingComponentsFrom = new HashSet<>();
-        for (Component component : from.iterateComponents()) {
-            if (component instanceof ItemDifferentiating) {
-                differentiatingComponentsFrom.add(component);
+    /**
+     * Check whether both items have equal {@link ItemDifferentiating} components.
+     * <p>
+     * Runs for every merge candidate, so it looks the counterparts up directly instead of collecting the components
+     * of both items first.
+     */
+    private static boolean hasSameAttributes(ComponentContainer from, ComponentContainer to) {
+        List<Class<? extends Component>> componentClasses = differentiatingComponents;
+        if (componentClasses != null) {
+            for (Class<? extends Component> componentClass : componentClasses) {
+                Component componentFrom = from.getComponent(componentClass);
+                Component componentTo = to.getComponent(componentClass);
+                if (componentFrom == null ? componentTo != null : !componentFrom.equals(componentTo)) {
+                    return false;
+                }
             }
+            return true;
         }
 
-        Map<Class<?>, Component> differentiatingComponentsTo = new HashMap<>();
-        for (Component component : to.iterateComponents()) {
+        int differentiatingComponentsFrom = 0;
+        for (Component component : from.iterateComponents()) {
             if (component instanceof ItemDifferentiating) {
-                differentiatingComponentsTo.put(component.getClass(), component);
+                Component componentInTarget = to.getComponent(component.getClass());
+                if (componentInTarget == null || !component.equals(componentInTarget)) {
+                    return false;
+                }
+                differentiatingComponentsFrom++;
             }
         }
 
-        if (differentiatingComponentsFrom.size() != differentiatingComponentsTo.size()) {
-            return false;
-        }
-
-        for (Component component : differentiatingComponentsFrom) {
-            Component componentInTarget = differentiatingComponentsTo.get(component.getClass());
-            if (componentInTarget == null) {
-                return false;
-            }
-
-            if (!component.equals(componentInTarget)) {
-                return false;
+        int differentiatingComponentsTo = 0;
+        for (Component component : to.iterateComponents()) {
+            if (component instanceof ItemDifferentiating) {
+                differentiatingComponentsTo++;
             }
         }
 
-        return true;
+        return differentiatingComponentsFrom == differentiatingComponentsTo;
     }
 
     /**
@@ -175,14 +237,15 @@ public final class InventoryUtils {
         return hasStackId(item1) && hasStackId(item2) && item1.stackId.equals(item2.stackId);
     }
 
-    private static boolean validateMove(EntityRef instigator, EntityRef from, int slotFrom, EntityRef to, int slotTo) {
+    private static boolean validateMove(InventoryTransaction transaction, EntityRef instigator, EntityRef from, int slotFrom,
+                                        EntityRef to, int slotTo) {
         // Validate the move
         EntityRef itemFrom = InventoryUtils.getItemAt(from, slotFrom);
         EntityRef itemTo = InventoryUtils.getItemAt(to, slotTo);
 
         if (itemFrom.exists()) {
             BeforeItemRemovedFromInventory removeFrom = new BeforeItemRemovedFromInventory(instigator, itemFrom, slotFrom);
-            from.send(removeFrom);
+            transaction.send(from, removeFrom);
             if (removeFrom.isConsumed()) {
                 return false;
             }
@@ -190,7 +253,7 @@ public final class InventoryUtils {
 
         if (itemTo.exists()) {
             BeforeItemRemovedFromInventory removeTo = new BeforeItemRemovedFromInventory(instigator, itemTo, slotTo);
-            to.send(removeTo);
+            transaction.send(to, removeTo);
             if (removeTo.isConsumed()) {
                 return false;
             }
@@ -198,7 +261,7 @@ public final class InventoryUtils {
 
         if (itemTo.exists()) {
             BeforeItemPutInInventory putFrom = new BeforeItemPutInInventory(instigator, itemTo, slotFrom);
-            from.send(putFrom);
+            transaction.send(from, putFrom);
             if (putFrom.isConsumed()) {
                 return false;
             }
@@ -206,7 +269,7 @@ public final class InventoryUtils {
 
         if (itemFrom.exists()) {
             BeforeItemPutInInventory putTo = new BeforeItemPutInInventory(instigator, itemFrom, slotTo);
-            to.send(putTo);
+            transaction.send(to, putTo);
             if (putTo.isConsumed()) {
                 return false;
             }
@@ -215,7 +278,8 @@ public final class InventoryUtils {
         return true;
     }
 
-    private static boolean validateMoveAmount(EntityRef instigator, EntityRef from, int slotFrom, EntityRef to, int slotTo, int amount) {
+    private static boolean validateMoveAmount(InventoryTransaction transaction, EntityRef instigator, EntityRef from,
+                                              int slotFrom, EntityRef to, int slotTo, int amount) {
         ItemComponent itemFrom = InventoryUtils.getItemAt(from, slotFrom).getComponent(ItemComponent.class);
         ItemComponent itemTo = InventoryUtils.getItemAt(to, slotTo).getComponent(ItemComponent.class);
 
@@ -238,14 +302,14 @@ public final class InventoryUtils {
 
         BeforeItemRemovedFromInventory removeFrom = new BeforeItemRemovedFromInventory(instigator,
                 InventoryUtils.getItemAt(from, slotFrom), slotFrom);
-        from.send(removeFrom);
+        transaction.send(from, removeFrom);
         if (removeFrom.isConsumed()) {
             return false;
         }
 
         if (itemTo == null) {
             BeforeItemPutInInventory putTo = new BeforeItemPutInInventory(instigator, InventoryUtils.getItemAt(from, slotFrom), slotTo);
-            to.send(putTo);
+            transaction.send(to, putTo);
             if (putTo.isConsumed()) {
                 return false;
             }
@@ -255,13 +319,15 @@ public final class InventoryUtils {
     }
 
     /**
+     * @param transaction the transaction to stage the changes in
      * @param from     has to provide {@link InventoryComponent} for a successful transfer\
      * @param fromSlot slot number to take the item from
      * @param to       has to provide {@link InventoryComponent} for a successful transfer
      * @param toSlots  slots that will be checked if they contain already the same type of item and have space
      * @return true if any amount > 0 got moved to the target
      */
-    private static int moveToExistingStacksInSlots(EntityRef from, int fromSlot, EntityRef to, List<Integer> toSlots) {
+    private static int moveToExistingStacksInSlots(InventoryTransaction transaction, EntityRef from, int fromSlot,
+                                                   EntityRef to, List<Integer> toSlots) {
         EntityRef fromItem = getItemAt(from, fromSlot);
         ItemComponent fromItemComp = fromItem.getComponent(ItemComponent.class);
         if (fromItemComp == null) {
@@ -282,12 +348,12 @@ public final class InventoryUtils {
                     int amountToTransfer = Math.min(spaceLeft, newFromStackCount);
                     newFromStackCount -= amountToTransfer;
                     if (newFromStackCount == 0) {
-                        putItemIntoSlot(from, EntityRef.NULL, fromSlot);
-                        fromItem.destroy();
+                        transaction.putItemIntoSlot(from, EntityRef.NULL, fromSlot);
+                        transaction.destroy(fromItem);
                     } else {
-                        adjustStackSize(from, fromSlot, newFromStackCount);
+                        transaction.adjustStackSize(from, fromSlot, newFromStackCount);
                     }
-                    adjustStackSize(to, toSlot, toItemComp.stackCount + amountToTransfer);
+                    transaction.adjustStackSize(to, toSlot, toItemComp.stackCount + amountToTransfer);
                 }
             }
             if (newFromStackCount == 0) {
@@ -298,6 +364,7 @@ public final class InventoryUtils {
     }
 
     /**
+     * @param transaction the transaction to stage the changes in
      * @param instigator used to verify if the action is allowed
      * @param to         has to provide {@link InventoryComponent} for a successful transfer
      * @param slotFrom   slot number to take the items from.
@@ -305,7 +372,8 @@ public final class InventoryUtils {
      * @param toSlots    slots that will be checked if they are free
      * @return true if at least 1 item got moved from the specified location.
      */
-    private static boolean moveToFreeSlots(EntityRef instigator, EntityRef from, int slotFrom, EntityRef to, List<Integer> toSlots) {
+    private static boolean moveToFreeSlots(InventoryTransaction transaction, EntityRef instigator, EntityRef from,
+                                           int slotFrom, EntityRef to, List<Integer> toSlots) {
         EntityRef fromItem = getItemAt(from, slotFrom);
         ItemComponent fromItemComp = fromItem.getComponent(ItemComponent.class);
         if (fromItemComp == null) {
@@ -316,11 +384,11 @@ public final class InventoryUtils {
             EntityRef toItem = getItemAt(to, toSlot);
             if (!toItem.exists()) {
                 BeforeItemPutInInventory putTo = new BeforeItemPutInInventory(instigator, fromItem, toSlot);
-                to.send(putTo);
+                transaction.send(to, putTo);
                 boolean allowed = !putTo.isConsumed();
                 if (allowed) {
-                    putItemIntoSlot(from, EntityRef.NULL, slotFrom);
-                    putItemIntoSlot(to, fromItem, toSlot);
+                    transaction.putItemIntoSlot(from, EntityRef.NULL, slotFrom);
+                    transaction.putItemIntoSlot(to, fromItem, toSlot);
                     return true;
                 }
             }
@@ -329,51 +397,64 @@ public final class InventoryUtils {
     }
 
     static boolean moveItemToSlots(EntityRef instigator, EntityRef from, int fromSlot, EntityRef to, List<Integer> toSlots) {
+        InventoryTransaction transaction = new InventoryTransaction();
+        return complete(transaction, moveItemToSlots(transaction, instigator, from, fromSlot, to, toSlots));
+    }
+
+    static boolean moveItemToSlots(InventoryTransaction transaction, EntityRef instigator, EntityRef from, int fromSlot,
+                                   EntityRef to, List<Integer> toSlots) {
         EntityRef fromItem = InventoryUtils.getItemAt(from, fromSlot);
         BeforeItemRemovedFromInventory removeFrom = new BeforeItemRemovedFromInventory(instigator, fromItem, fromSlot);
-        from.send(removeFrom);
+        transaction.send(from, removeFrom);
         if (removeFrom.isConsumed()) {
             return false;
         }
 
         int stackCount = InventoryUtils.getStackCount(fromItem);
 
-        int movedToStack = moveToExistingStacksInSlots(from, fromSlot, to, toSlots);
+        int movedToStack = moveToExistingStacksInSlots(transaction, from, fromSlot, to, toSlots);
 
         boolean movedToFreeSlot = false;
         if (stackCount != movedToStack) {
-            movedToFreeSlot = moveToFreeSlots(instigator, from, fromSlot, to, toSlots);
+            movedToFreeSlot = moveToFreeSlots(transaction, instigator, from, fromSlot, to, toSlots);
         }
 
         return movedToStack > 0 || movedToFreeSlot;
     }
 
     static boolean moveItem(EntityRef instigator, EntityRef from, int slotFrom, EntityRef to, int slotTo) {
-        if (checkForStacking(from, slotFrom, to, slotTo)) {
+        InventoryTransaction transaction = new InventoryTransaction();
+        return complete(transaction, moveItem(transaction, instigator, from, slotFrom, to, slotTo));
+    }
+
+    static boolean moveItem(InventoryTransaction transaction, EntityRef instigator, EntityRef from, int slotFrom,
+                            EntityRef to, int slotTo) {
+        if (checkForStacking(transaction, from, slotFrom, to, slotTo)) {
             return true;
         }
 
-        if (!InventoryUtils.validateMove(instigator, from, slotFrom, to, slotTo)) {
+        if (!InventoryUtils.validateMove(transaction, instigator, from, slotFrom, to, slotTo)) {
             return false;
         }
         EntityRef itemFrom = getItemAt(from, slotFrom);
         EntityRef itemTo = getItemAt(to, slotTo);
 
-        putItemIntoSlot(from, itemTo, slotFrom);
-        putItemIntoSlot(to, itemFrom, slotTo);
+        transaction.putItemIntoSlot(from, itemTo, slotFrom);
+        transaction.putItemIntoSlot(to, itemFrom, slotTo);
 
         return true;
     }
 
-    private static boolean checkForStacking(EntityRef from, int slotFrom, EntityRef to, int slotTo) {
+    private static boolean checkForStacking(InventoryTransaction transaction, EntityRef from, int slotFrom, EntityRef to,
+                                            int slotTo) {
         EntityRef itemFrom = getItemAt(from, slotFrom);
         EntityRef itemTo = getItemAt(to, slotTo);
 
         if (itemFrom.exists() && itemTo.exists() && canStackInto(itemFrom, itemTo)) {
             int fromCount = itemFrom.getComponent(ItemComponent.class).stackCount;
             int toCount = itemTo.getComponent(ItemComponent.class).stackCount;
-            putItemIntoSlot(from, EntityRef.NULL, slotFrom);
-            adjustStackSize(to, slotTo, fromCount + toCount);
+            transaction.putItemIntoSlot(from, EntityRef.NULL, slotFrom);
+            transaction.adjustStackSize(to, slotTo, fromCount + toCount);
 
             return true;
         }
@@ -382,7 +463,22 @@ public final class InventoryUtils {
     }
 
     static boolean moveItemAmount(EntityRef instigator, EntityRef from, int slotFrom, EntityRef to, int slotTo, int amount) {
-        if (!InventoryUtils.validateMoveAmount(instigator, from, slotFrom, to, slotTo, amount)) {
+        InventoryTransaction transaction = new InventoryTransaction();
+        return complete(transaction, moveItemAmount(transaction, instigator, from, slotFrom, to, slotTo, amount));
+    }
+
+    static boolean moveItemAmount(InventoryTransaction transaction, EntityRef instigator, EntityRef from, int slotFrom,
+                                  EntityRef to, int slotTo, int amount) {
+        return moveItemAmount(transaction, instigator, from, slotFrom, to, slotTo, amount, EntityRef.NULL);
+    }
+
+    /**
+     * @param splitStack the entity to put into an empty target slot instead of a new copy of the moved item, e.g. the
+     *                   one a client created when it last predicted the same move; only used if it is the same item
+     */
+    static boolean moveItemAmount(InventoryTransaction transaction, EntityRef instigator, EntityRef from, int slotFrom,
+                                  EntityRef to, int slotTo, int amount, EntityRef splitStack) {
+        if (!InventoryUtils.validateMoveAmount(transaction, instigator, from, slotFrom, to, slotTo, amount)) {
             return false;
         }
 
@@ -390,7 +486,13 @@ public final class InventoryUtils {
         EntityRef itemTo = getItemAt(to, slotTo);
 
         if (!itemTo.exists()) {
-            EntityRef fromCopy = itemFrom.copy();
+            EntityRef fromCopy;
+            if (splitStack.exists() && isSameItem(splitStack, itemFrom)) {
+                fromCopy = splitStack;
+            } else {
+                fromCopy = itemFrom.copy();
+                transaction.destroyOnRollback(fromCopy);
+            }
 
             ItemComponent copyItem = fromCopy.getComponent(ItemComponent.class);
             copyItem.stackCount = (byte) amount;
@@ -398,42 +500,38 @@ public final class InventoryUtils {
 
             ItemComponent fromItem = itemFrom.getComponent(ItemComponent.class);
             if (fromItem.stackCount == amount) {
-                putItemIntoSlot(from, EntityRef.NULL, slotFrom);
+                transaction.putItemIntoSlot(from, EntityRef.NULL, slotFrom);
             } else {
-                adjustStackSize(from, slotFrom, fromItem.stackCount - amount);
+                transaction.adjustStackSize(from, slotFrom, fromItem.stackCount - amount);
             }
-            putItemIntoSlot(to, fromCopy, slotTo);
+            transaction.putItemIntoSlot(to, fromCopy, slotTo);
         } else {
             ItemComponent itemFromComponent = itemFrom.getComponent(ItemComponent.class);
             if (itemFromComponent.stackCount == amount) {
-                putItemIntoSlot(from, EntityRef.NULL, slotFrom);
+                transaction.putItemIntoSlot(from, EntityRef.NULL, slotFrom);
             } else {
-                adjustStackSize(from, slotFrom, itemFromComponent.stackCount - amount);
+                transaction.adjustStackSize(from, slotFrom, itemFromComponent.stackCount - amount);
             }
 
             ItemComponent itemToComponent = itemTo.getComponent(ItemComponent.class);
-            adjustStackSize(to, slotTo, itemToComponent.stackCount + amount);
+            transaction.adjustStackSize(to, slotTo, itemToComponent.stackCount + amount);
         }
 
         return true;
     }
 
-    static void putItemIntoSlot(EntityRef entity, EntityRef item, int slot) {
-        InventoryComponent inventory = entity.getComponent(InventoryComponent.class);
-        EntityRef oldItem = inventory.itemSlots.get(slot);
-        inventory.itemSlots.set(slot, item);
-        entity.saveComponent(inventory);
-        entity.send(new InventorySlotChangedEvent(slot, oldItem, item));
-    }
-
-    static void adjustStackSize(EntityRef entity, int slot, int newCount) {
-        InventoryComponent inventory = entity.getComponent(InventoryComponent.class);
-        EntityRef item = inventory.itemSlots.get(slot);
-        ItemComponent itemComponent = item.getComponent(ItemComponent.class);
-        byte oldSize = itemComponent.stackCount;
-        itemComponent.stackCount = (byte) newCount;
-        item.saveComponent(itemComponent);
-        entity.send(new InventorySlotStackSizeChangedEvent(slot, oldSize, newCount));
+    /**
+     * Commit the transaction if the operation staged in it succeeded, roll it back otherwise.
+     *
+     * @return whether the operation succeeded
+     */
+    private static boolean complete(InventoryTransaction transaction, boolean success) {
+        if (success) {
+            transaction.commit();
+        } else {
+            transaction.rollback();
+        }
+        return success;
     }
 
     /**
@@ -0,0 +1,102 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.systems;
+
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.BeforeDeactivateComponent;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.OnChangedComponent;
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterMode;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.logic.common.DisplayNameComponent;
+import org.terasology.engine.logic.inventory.ItemComponent;
+import org.terasology.engine.registry.Share;
+import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
+import org.terasology.module.inventory.ui.GetItemTooltip;
+import org.terasology.nui.widgets.TooltipLine;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the tooltip lines of items, so that cells do not send a {@link GetItemTooltip} to their item whenever
+ * their tooltip is looked at, which happens every frame.
+ * <p>
+ * The lines of an item are collected anew after its {@link ItemComponent} or {@link DisplayNameComponent} changed, or
+ * after {@link #invalidate(EntityRef)} has been called for it, e.g. by a cell when the mouse moves onto it, so that a
+ * tooltip that is actually shown is never outdated. Other components are not watched, as lifecycle events are only
+ * received for the component types named by a handler. Only the most recently used items are remembered, so that
+ * closed screens do not keep the lines of their items alive.
+ */
+@RegisterSystem(RegisterMode.CLIENT)
+@Share(ItemTooltipCache.class)
+public class ItemTooltipCache extends BaseComponentSystem {
+    static final int MAX_ENTRIES = 256;
+
+    private final Map<EntityRef, List<TooltipLine>> tooltips = new LinkedHashMap<EntityRef, List<TooltipLine>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<EntityRef, List<TooltipLine>> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * @param item the item to get the tooltip of
+     * @return the tooltip lines of the item, collected by sending it a {@link GetItemTooltip} unless already known
+     */
+    public List<TooltipLine> getTooltipLines(EntityRef item) {
+        List<TooltipLine> lines = tooltips.get(item);
+        if (lines == null) {
+            lines = collectTooltipLines(item);
+            if (item.exists()) {
+                tooltips.put(item, lines);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Collect the tooltip lines of an item anew the next time they are asked for.
+     */
+    public void invalidate(EntityRef item) {
+        tooltips.remove(item);
+    }
+
+    /**
+     * Collect the tooltip lines of an item, without looking at or updating the cache.
+     */
+    public static List<TooltipLine> collectTooltipLines(EntityRef item) {
+        GetItemTooltip itemTooltip;
+        DisplayNameComponent displayNameComponent = item.getComponent(DisplayNameComponent.class);
+        if (displayNameComponent != null) {
+            itemTooltip = new GetItemTooltip(displayNameComponent.name);
+        } else {
+            itemTooltip = new GetItemTooltip();
+        }
+        item.send(itemTooltip);
+        return Collections.unmodifiableList(itemTooltip.getTooltipLines());
+    }
+
+    @ReceiveEvent(components = ItemComponent.class)
+    public void onItemChanged(OnChangedComponent event, EntityRef item) {
+        invalidate(item);
+    }
+
+    @ReceiveEvent(components = DisplayNameComponent.class)
+    public void onDisplayNameChanged(OnChangedComponent event, EntityRef item) {
+        invalidate(item);
+    }
+
+    @ReceiveEvent(components = ItemComponent.class)
+    public void onItemDeactivated(BeforeDeactivateComponent event, EntityRef item) {
+        invalidate(item);
+    }
+
+    @Override
+    public void shutdown() {
+        tooltips.clear();
+    }
+}
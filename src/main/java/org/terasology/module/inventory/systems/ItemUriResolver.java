@@ -0,0 +1,130 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.systems;
+
+import org.terasology.engine.entitySystem.prefab.Prefab;
+import org.terasology.engine.entitySystem.prefab.PrefabManager;
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.logic.inventory.ItemComponent;
+import org.terasology.engine.registry.In;
+import org.terasology.engine.registry.Share;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockManager;
+import org.terasology.engine.world.block.family.BlockFamily;
+import org.terasology.gestalt.assets.Asset;
+import org.terasology.gestalt.assets.AssetData;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.gestalt.assets.management.AssetManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Resolves the URIs used to name items and blocks, e.g. in starting inventories and commands, and remembers the
+ * results, as the same few URIs are resolved over and over again.
+ * <p>
+ * Reloading an asset updates the existing {@link Prefab}, so cached prefabs stay valid; a prefab that has been
+ * disposed of is resolved anew, as is a block family whose archetype block is no longer the one registered with the
+ * block manager, e.g. because the world and its blocks have been loaded anew. The cache is dropped as a whole whenever
+ * the module environment changes, as the system is created anew then, or when {@link #clear()} is called, e.g. after
+ * assets have been added at runtime.
+ */
+@RegisterSystem
+@Share(ItemUriResolver.class)
+public class ItemUriResolver extends BaseComponentSystem {
+    /**
+     * How many URIs to remember per kind of lookup. Commands accept any string, so the caches must not grow unbounded.
+     */
+    static final int MAX_ENTRIES = 256;
+
+    @In
+    private AssetManager assetManager;
+
+    @In
+    private PrefabManager prefabManager;
+
+    @In
+    private BlockManager blockManager;
+
+    private final Map<Class<?>, Map<String, Set<ResourceUrn>>> urns = new HashMap<>();
+    private final Map<String, Optional<Prefab>> itemPrefabs = lruMap();
+    private final Map<String, Optional<BlockFamily>> blockFamilies = lruMap();
+
+    public ItemUriResolver() {
+    }
+
+    ItemUriResolver(AssetManager assetManager, PrefabManager prefabManager, BlockManager blockManager) {
+        this.assetManager = assetManager;
+        this.prefabManager = prefabManager;
+        this.blockManager = blockManager;
+    }
+
+    /**
+     * Resolve a possibly partial URI to the URNs of the assets of the given type it may refer to.
+     *
+     * @see AssetManager#resolve(String, Class)
+     */
+    public <T extends Asset<U>, U extends AssetData> Set<ResourceUrn> resolve(String uri, Class<T> type) {
+        return urns.computeIfAbsent(type, k -> lruMap())
+                .computeIfAbsent(uri, k -> Collections.unmodifiableSet(assetManager.resolve(uri, type)));
+    }
+
+    /**
+     * @return the prefab the URI refers to if it has an {@link ItemComponent}, empty otherwise
+     */
+    public Optional<Prefab> resolveItemPrefab(String uri) {
+        Optional<Prefab> prefab = itemPrefabs.get(uri);
+        if (prefab == null || prefab.isPresent() && prefab.get().isDisposed()) {
+            prefab = Optional.ofNullable(prefabManager.getPrefab(uri))
+                    .filter(p -> p.hasComponent(ItemComponent.class));
+            itemPrefabs.put(uri, prefab);
+        }
+        return prefab;
+    }
+
+    /**
+     * @return the block family the URI refers to, empty if there is none
+     */
+    public Optional<BlockFamily> resolveBlockFamily(String uri) {
+        Optional<BlockFamily> blockFamily = blockFamilies.get(uri);
+        if (blockFamily == null || blockFamily.isPresent() && !isRegistered(blockFamily.get())) {
+            blockFamily = Optional.ofNullable(blockManager.getBlockFamily(uri));
+            blockFamilies.put(uri, blockFamily);
+        }
+        return blockFamily;
+    }
+
+    private boolean isRegistered(BlockFamily blockFamily) {
+        Block archetype = blockFamily.getArchetypeBlock();
+        return blockManager.getBlock(archetype.getURI()) == archetype;
+    }
+
+    /**
+     * Forget all resolved URIs.
+     */
+    public void clear() {
+        urns.clear();
+        itemPrefabs.clear();
+        blockFamilies.clear();
+    }
+
+    @Override
+    public void shutdown() {
+        clear();
+    }
+
+    private static <V> Map<String, V> lruMap() {
+        return new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+    }
+}
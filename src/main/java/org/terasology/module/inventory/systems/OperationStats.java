@@ -0,0 +1,105 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.systems;
+
+/**
+ * A snapshot of the statistics recorded for one kind of inventory operation.
+ * <p>
+ * Latencies are kept in a histogram with power of two buckets: bucket {@code i} counts the runs that took less than
+ * {@code 2^i} nanoseconds, but at least {@code 2^(i-1)}.
+ */
+public final class OperationStats {
+    public static final int BUCKETS = 40;
+
+    private final long count;
+    private final long failures;
+    private final long vetoes;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long eventsSent;
+    private final long componentsSaved;
+    private final long[] histogram;
+
+    OperationStats(long count, long failures, long vetoes, long totalNanos, long maxNanos, long eventsSent,
+                   long componentsSaved, long[] histogram) {
+        this.count = count;
+        this.failures = failures;
+        this.vetoes = vetoes;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.eventsSent = eventsSent;
+        this.componentsSaved = componentsSaved;
+        this.histogram = histogram.clone();
+    }
+
+    /**
+     * @return the histogram bucket a run of the given duration falls into
+     */
+    static int bucketOf(long durationNanos) {
+        int bucket = 64 - Long.numberOfLeadingZeros(Math.max(0, durationNanos));
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public long getVetoes() {
+        return vetoes;
+    }
+
+    /**
+     * @return the share of runs in which a veto event was consumed, between 0 and 1
+     */
+    public double getVetoRate() {
+        return count == 0 ? 0 : (double) vetoes / count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public double getMeanNanos() {
+        return count == 0 ? 0 : (double) totalNanos / count;
+    }
+
+    /**
+     * @param percentile the percentile to estimate, between 0 and 100
+     * @return an upper bound for the latency the given percentage of runs stayed below, accurate up to a factor of two
+     */
+    public long getPercentileNanos(double percentile) {
+        long threshold = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += histogram[bucket];
+            if (seen >= threshold && seen > 0) {
+                return Math.min(1L << bucket, maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    public long getEventsSent() {
+        return eventsSent;
+    }
+
+    public long getComponentsSaved() {
+        return componentsSaved;
+    }
+
+    /**
+     * @return the number of runs that fell into each latency bucket
+     */
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+}
@@ -8,14 +8,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terasology.engine.entitySystem.entity.EntityManager;
 import org.terasology.engine.entitySystem.entity.EntityRef;
-import org.terasology.engine.entitySystem.prefab.PrefabManager;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.BeforeDeactivateComponent;
+import org.terasology.engine.entitySystem.prefab.Prefab;
 import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.entitySystem.systems.RegisterMode;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.entitySystem.systems.UpdateSubscriberSystem;
 import org.terasology.engine.logic.inventory.ItemComponent;
 import org.terasology.engine.logic.players.event.OnPlayerSpawnedEvent;
 import org.terasology.engine.registry.In;
-import org.terasology.engine.world.block.BlockManager;
+import org.terasology.engine.world.block.family.BlockFamily;
 import org.terasology.engine.world.block.items.BlockItemFactory;
 import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
 import org.terasology.module.inventory.components.InventoryComponent;
@@ -23,19 +25,30 @@ import org.terasology.module.inventory.components.InventoryItem;
 import org.terasology.module.inventory.components.StartingInventoryComponent;
 import org.terasology.module.inventory.events.RequestInventoryEvent;
 
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import java.util.function.Supplier;
-import java.util.stream.Stream;
 
+/**
+ * Fills the inventories of spawned players according to their {@link StartingInventoryComponent}.
+ * <p>
+ * Spawned players are queued and their starting inventories built on the following updates, as many per update as fit
+ * into {@link #UPDATE_BUDGET_NANOS}, so that many players joining at once do not stall a single tick. Each starting
+ * inventory is built in one {@link InventoryTransaction}, which removes the {@link StartingInventoryComponent} when it is
+ * committed; a player whose starting inventory fails to build keeps the component and gets it on the next spawn.
+ * {@link RequestInventoryEvent}s sent by others are still handled right away.
+ */
 @RegisterSystem(RegisterMode.AUTHORITY)
-public class StartingInventorySystem extends BaseComponentSystem {
+public class StartingInventorySystem extends BaseComponentSystem implements UpdateSubscriberSystem {
 
     private static final Logger logger = LoggerFactory.getLogger(StartingInventorySystem.class);
 
-    @In
-    BlockManager blockManager;
+    /**
+     * How long to spend on building starting inventories per update. At least one is built per update.
+     */
+    private static final long UPDATE_BUDGET_NANOS = 2_000_000;
 
     @In
     InventoryManager inventoryManager;
@@ -44,7 +57,7 @@ public class StartingInventorySystem extends BaseComponentSystem {
     EntityManager entityManager;
 
     @In
-    PrefabManager prefabManager;
+    ItemUriResolver itemUriResolver;
 
     BlockItemFactory blockFactory;
 
@@ -53,6 +66,16 @@ public class StartingInventorySystem extends BaseComponentSystem {
      */
     private final Set<String> entitiesWithoutInventory = Sets.newHashSet();
 
+    /**
+     * Spawned players waiting for their starting inventory.
+     */
+    private final Set<EntityRef> pendingPlayers = new LinkedHashSet<>();
+
+    /**
+     * The transaction the starting inventory currently being built is staged in, null if none is being built.
+     */
+    private InventoryTransaction buildTransaction;
+
     @Override
     public void initialise() {
         blockFactory = new BlockItemFactory(entityManager);
@@ -62,8 +85,46 @@ public class StartingInventorySystem extends BaseComponentSystem {
     public void onStartingInventory(OnPlayerSpawnedEvent event,
                                     EntityRef player,
                                     StartingInventoryComponent startingInventory) {
-        player.send(new RequestInventoryEvent(startingInventory.items));
-        player.removeComponent(StartingInventoryComponent.class);
+        pendingPlayers.add(player);
+    }
+
+    @Override
+    public void update(float delta) {
+        long start = System.nanoTime();
+        Iterator<EntityRef> pending = pendingPlayers.iterator();
+        while (pending.hasNext()) {
+            EntityRef player = pending.next();
+            try {
+                buildStartingInventory(player);
+            } catch (RuntimeException e) {
+                // rolled back, so the player still has the component and will get the inventory on the next spawn
+                logger.error("Could not build the starting inventory of {}, skipping it", player, e);
+            }
+            pending.remove();
+            if (System.nanoTime() - start > UPDATE_BUDGET_NANOS) {
+                break;
+            }
+        }
+    }
+
+    private void buildStartingInventory(EntityRef player) {
+        StartingInventoryComponent startingInventory = player.getComponent(StartingInventoryComponent.class);
+        if (startingInventory == null) {
+            return;
+        }
+        try (InventoryTransaction transaction = inventoryManager.beginTransaction()) {
+            buildTransaction = transaction;
+            player.send(new RequestInventoryEvent(startingInventory.items));
+            player.removeComponent(StartingInventoryComponent.class);
+            transaction.commit();
+        } finally {
+            buildTransaction = null;
+        }
+    }
+
+    @ReceiveEvent(components = InventoryComponent.class)
+    public void onPlayerDeactivated(BeforeDeactivateComponent event, EntityRef player) {
+        pendingPlayers.remove(player);
     }
 
     @ReceiveEvent(components = InventoryComponent.class)
@@ -109,6 +170,9 @@ public class StartingInventorySystem extends BaseComponentSystem {
     /**
      * Attempt to resolve the given {@code item} as block or item and add it to the entity's inventory.
      * <p>
+     * The item is resolved once, and only one entity is created per stack it takes up in the inventory. Items without
+     * nested items are handed to {@link InventoryManager#giveItems} as a whole, which tops up existing stacks first.
+     * <p>
      * If the item cannot be resolved the target inventory will not be changed.
      * <p>
      * <strong>Calling this method may add errors to {@link #entitiesWithoutInventory}.</strong>
@@ -117,21 +181,38 @@ public class StartingInventorySystem extends BaseComponentSystem {
      * @param item the item to add to the entity's inventory
      */
     private void addToInventory(EntityRef entity, InventoryItem item) {
-
-        //TODO(Java9): Use Optional::or instead (https://docs.oracle.com/javase/9/docs/api/java/util/Optional
-        // .html#or-java.util.function.Supplier-)
-        //             This article describes the issue and provides the solution used here:
-        //                  https://www.baeldung.com/java-optional-or-else-optional#1-lazy-evaluation
-        final Optional<Supplier<EntityRef>> possibleItem =
-                resolveAsItem(item.uri).map(Optional::of).orElseGet(() -> resolveAsBlock(item.uri));
-
-        if (possibleItem.isPresent()) {
-            Stream.generate(possibleItem.get())
-                    .limit(item.quantity)
-                    .map(i -> addItemsTo(item.items, i, item.uri))
-                    .forEach(o -> inventoryManager.giveItem(entity, EntityRef.NULL, o));
-        } else {
+        Optional<Prefab> prefab = resolveAsItem(item.uri);
+        Optional<BlockFamily> blockFamily = prefab.isPresent() ? Optional.empty() : resolveAsBlock(item.uri);
+        if (!prefab.isPresent() && !blockFamily.isPresent()) {
             logger.warn("Could not resolve '{}' to either block or item.", item.uri);
+            return;
+        }
+
+        if (prefab.isPresent() && item.items.isEmpty()) {
+            inventoryManager.giveItems(entity, EntityRef.NULL, prefab.get(), item.quantity, null);
+            return;
+        }
+
+        int quantityLeft = item.quantity;
+        while (quantityLeft > 0) {
+            EntityRef stack = prefab.isPresent()
+                    ? entityManager.create(prefab.get())
+                    : blockFactory.newInstance(blockFamily.get());
+            if (buildTransaction != null) {
+                buildTransaction.destroyOnRollback(stack);
+            }
+            ItemComponent itemComponent = stack.getComponent(ItemComponent.class);
+            int stackCount = InventoryUtils.isStackable(itemComponent) ? Math.min(quantityLeft, itemComponent.maxStackSize) : 1;
+            itemComponent.stackCount = (byte) stackCount;
+            stack.saveComponent(itemComponent);
+            addItemsTo(item.items, stack, item.uri);
+            quantityLeft -= stackCount;
+
+            if (!inventoryManager.giveItem(entity, EntityRef.NULL, stack)) {
+                // the inventory is full
+                stack.destroy();
+                return;
+            }
         }
     }
 
@@ -149,40 +230,37 @@ public class StartingInventorySystem extends BaseComponentSystem {
      * @param entity the entity to add the starting inventory objects to
      * @param entityDescriptor a descriptive string (name or Uri) for the entity, used for logging
      */
-    private EntityRef addItemsTo(List<InventoryItem> items, EntityRef entity,
-                                 String entityDescriptor) {
+    private void addItemsTo(List<InventoryItem> items, EntityRef entity, String entityDescriptor) {
         if (items.isEmpty() || entity.hasComponent(InventoryComponent.class)) {
-            items.stream()
-                    .filter(this::isValid)
-                    .forEach(item -> addToInventory(entity, item));
+            for (InventoryItem item : items) {
+                if (isValid(item)) {
+                    addToInventory(entity, item);
+                }
+            }
         } else {
             entitiesWithoutInventory.add(entityDescriptor);
         }
-        return entity;
     }
 
     /**
-     * Attempt to resolve the given URI as block and yield a supplier for new block items.
+     * Attempt to resolve the given URI as block family.
      *
      * @param uri the URI to resolve as block item
-     * @return an optional supplier for block items if the URI references a block family, empty otherwise
+     * @return the block family the URI references, empty if there is none
      */
-    private Optional<Supplier<EntityRef>> resolveAsBlock(final String uri) {
-        return Optional.ofNullable(blockManager.getBlockFamily(uri))
-                .map(blockFamily -> () -> blockFactory.newInstance(blockFamily));
+    private Optional<BlockFamily> resolveAsBlock(final String uri) {
+        return itemUriResolver.resolveBlockFamily(uri);
     }
 
     /**
-     * Attempt to resolve the given URI as item prefab and yield a supplier to create new item instances.
+     * Attempt to resolve the given URI as item prefab.
      * <p>
      * The prefab the object URI resolves to must have an {@link ItemComponent}.
      *
      * @param uri the URI to resolve as item prefab
-     * @return an optional supplier for a prefab item if the URI resolves to a prefab, empty otherwise
+     * @return the item prefab the URI resolves to, empty if there is none
      */
-    private Optional<Supplier<EntityRef>> resolveAsItem(String uri) {
-        return Optional.ofNullable(prefabManager.getPrefab(uri))
-                .filter(prefab -> prefab.hasComponent(ItemComponent.class))
-                .map(prefab -> () -> entityManager.create(uri));
+    private Optional<Prefab> resolveAsItem(String uri) {
+        return itemUriResolver.resolveItemPrefab(uri);
     }
 }
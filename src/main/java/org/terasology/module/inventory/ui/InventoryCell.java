@@ -22,9 +22,9 @@ import org.terasology.nui.LayoutConfig;
 import org.terasology.nui.databinding.Binding;
 import org.terasology.nui.databinding.DefaultBinding;
 import org.terasology.nui.events.NUIMouseClickEvent;
+import org.terasology.nui.events.NUIMouseOverEvent;
 import org.terasology.nui.events.NUIMouseWheelEvent;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -37,6 +37,18 @@ public class InventoryCell extends ItemCell {
 
     private Binding<EntityRef> targetInventory = new DefaultBinding<>(EntityRef.NULL);
 
+    private InventoryViewModel viewModel;
+
+    private LocalPlayer localPlayer;
+    private InventoryManager inventoryManager;
+    private SmartMoveSlots smartMoveSlots;
+
+    /**
+     * The entity holding the item being moved by the character {@link #transferEntity} was looked up for.
+     */
+    private EntityRef transferCharacter = EntityRef.NULL;
+    private EntityRef transferEntity = EntityRef.NULL;
+
     private InteractionListener interactionListener = new BaseInteractionListener() {
         @Override
         public boolean onMouseClick(NUIMouseClickEvent event) {
@@ -75,6 +87,14 @@ public class InventoryCell extends ItemCell {
             }
             return true;
         }
+
+        @Override
+        public void onMouseOver(NUIMouseOverEvent event) {
+            if (!isMouseOver()) {
+                refreshTooltip();
+            }
+            super.onMouseOver(event);
+        }
     };
 
     public InventoryCell() {
@@ -91,6 +111,39 @@ public class InventoryCell extends ItemCell {
         return InventoryUtils.getItemAt(getTargetInventory(), getTargetSlot());
     }
 
+    @Override
+    protected InventoryViewModel.SlotView getTargetView() {
+        if (viewModel != null) {
+            InventoryViewModel.SlotView view = viewModel.getSlot(getTargetInventory(), getTargetSlot());
+            if (view != null) {
+                return view;
+            }
+        }
+        return super.getTargetView();
+    }
+
+    /**
+     * Display the target slot as captured by the given view model, as long as it covers the slot.
+     *
+     * @param viewModel the view model kept up to date by the owner of the cell, or null to look at the item directly
+     */
+    public void setViewModel(InventoryViewModel viewModel) {
+        this.viewModel = viewModel;
+    }
+
+    /**
+     * Use the given services rather than looking them up, so that the cells of a grid or screen share them.
+     *
+     * @param localPlayer the player interacting with the cell
+     * @param inventoryManager the inventory manager to move items with
+     * @param smartMoveSlots the slots to move items to when shift-clicked, shared by the cells of the owner
+     */
+    public void setServices(LocalPlayer localPlayer, InventoryManager inventoryManager, SmartMoveSlots smartMoveSlots) {
+        this.localPlayer = localPlayer;
+        this.inventoryManager = inventoryManager;
+        this.smartMoveSlots = smartMoveSlots;
+    }
+
     public void bindTargetInventory(Binding<EntityRef> binding) {
         targetInventory = binding;
     }
@@ -116,27 +169,24 @@ public class InventoryCell extends ItemCell {
     }
 
     private void swapItem() {
-        EntityRef characterEntity = CoreRegistry.get(LocalPlayer.class).getCharacterEntity();
-        InventoryManager inventoryManager = CoreRegistry.get(InventoryManager.class);
-        inventoryManager.switchItem(getTransferEntity(), characterEntity, 0, getTargetInventory(), getTargetSlot());
+        EntityRef characterEntity = getLocalPlayer().getCharacterEntity();
+        getInventoryManager().switchItem(getTransferEntity(), characterEntity, 0, getTargetInventory(), getTargetSlot());
     }
 
     private void giveAmount(int amount) {
-        EntityRef characterEntity = CoreRegistry.get(LocalPlayer.class).getCharacterEntity();
-        InventoryManager inventoryManager = CoreRegistry.get(InventoryManager.class);
-        inventoryManager.moveItem(getTargetInventory(), characterEntity, getTargetSlot(), getTransferEntity(), 0, amount);
+        EntityRef characterEntity = getLocalPlayer().getCharacterEntity();
+        getInventoryManager().moveItem(getTargetInventory(), characterEntity, getTargetSlot(), getTransferEntity(), 0, amount);
     }
 
     private void takeAmount(int amount) {
-        EntityRef characterEntity = CoreRegistry.get(LocalPlayer.class).getCharacterEntity();
-        InventoryManager inventoryManager = CoreRegistry.get(InventoryManager.class);
-        inventoryManager.moveItem(getTransferEntity(), characterEntity, 0, getTargetInventory(), getTargetSlot(), amount);
+        EntityRef characterEntity = getLocalPlayer().getCharacterEntity();
+        getInventoryManager().moveItem(getTransferEntity(), characterEntity, 0, getTargetInventory(), getTargetSlot(), amount);
     }
 
     private void moveItemSmartly() {
         EntityRef fromEntity = getTargetInventory();
         int fromSlot = getTargetSlot();
-        EntityRef playerEntity = CoreRegistry.get(LocalPlayer.class).getCharacterEntity();
+        EntityRef playerEntity = getLocalPlayer().getCharacterEntity();
         InventoryComponent playerInventory = playerEntity.getComponent(InventoryComponent.class);
         if (playerInventory == null) {
             return;
@@ -153,42 +203,60 @@ public class InventoryCell extends ItemCell {
 
 
         EntityRef targetEntity;
-        List<Integer> toSlots = new ArrayList<>(totalSlotCount);
+        List<Integer> toSlots;
+        SmartMoveSlots slots = getSmartMoveSlots();
         if (fromEntity.equals(playerEntity)) {
 
             if (interactionTarget.exists() && interactionTargetInventory != null) {
                 targetEntity = interactionTarget;
-                toSlots = numbersBetween(0, interactionTargetInventory.itemSlots.size());
+                toSlots = slots.getTargetSlots(interactionTargetInventory.itemSlots.size());
             } else {
                 targetEntity = playerEntity;
-                int hudSlotCount = 10; // TODO use a constant once there is one
-                boolean fromHud = (fromSlot < hudSlotCount);
+                boolean fromHud = (fromSlot < SmartMoveSlots.HUD_SLOT_COUNT);
                 boolean toHud = !fromHud;
                 if (toHud) {
-                    toSlots = numbersBetween(0, hudSlotCount);
+                    toSlots = slots.getHudSlots();
                 } else {
-                    toSlots = numbersBetween(hudSlotCount, totalSlotCount);
+                    toSlots = slots.getBackpackSlots(totalSlotCount);
                 }
             }
         } else {
             targetEntity = playerEntity;
-            toSlots = numbersBetween(0, totalSlotCount);
+            toSlots = slots.getPlayerSlots(totalSlotCount);
         }
 
-        CoreRegistry.get(InventoryManager.class).moveItemToSlots(getTransferEntity(), fromEntity, fromSlot, targetEntity, toSlots);
+        getInventoryManager().moveItemToSlots(getTransferEntity(), fromEntity, fromSlot, targetEntity, toSlots);
     }
 
-    private List<Integer> numbersBetween(int start, int exclusiveEnd) {
-        List<Integer> numbers = new ArrayList<>();
-        for (int number = start; number < exclusiveEnd; number++) {
-            numbers.add(number);
+    private LocalPlayer getLocalPlayer() {
+        if (localPlayer == null) {
+            localPlayer = CoreRegistry.get(LocalPlayer.class);
         }
-        return numbers;
+        return localPlayer;
     }
 
+    private InventoryManager getInventoryManager() {
+        if (inventoryManager == null) {
+            inventoryManager = CoreRegistry.get(InventoryManager.class);
+        }
+        return inventoryManager;
+    }
+
+    private SmartMoveSlots getSmartMoveSlots() {
+        if (smartMoveSlots == null) {
+            smartMoveSlots = new SmartMoveSlots();
+        }
+        return smartMoveSlots;
+    }
 
     private EntityRef getTransferEntity() {
-        return CoreRegistry.get(LocalPlayer.class).getCharacterEntity().getComponent(CharacterComponent.class).movingItem;
+        EntityRef characterEntity = getLocalPlayer().getCharacterEntity();
+        if (!characterEntity.equals(transferCharacter) || !transferEntity.exists()) {
+            CharacterComponent characterComponent = characterEntity.getComponent(CharacterComponent.class);
+            transferEntity = characterComponent != null ? characterComponent.movingItem : EntityRef.NULL;
+            transferCharacter = characterEntity;
+        }
+        return transferEntity;
     }
 
     private EntityRef getTransferItem() {
@@ -8,9 +8,14 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import org.joml.Vector2i;
 import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.logic.players.LocalPlayer;
+import org.terasology.engine.registry.CoreRegistry;
 import org.terasology.input.MouseInput;
 import org.terasology.joml.geom.Rectanglei;
+import org.terasology.module.inventory.systems.BlockIconCache;
+import org.terasology.module.inventory.systems.InventoryManager;
 import org.terasology.module.inventory.systems.InventoryUtils;
+import org.terasology.module.inventory.systems.ItemTooltipCache;
 import org.terasology.nui.BaseInteractionListener;
 import org.terasology.nui.Canvas;
 import org.terasology.nui.CoreWidget;
@@ -21,6 +26,7 @@ import org.terasology.nui.databinding.Binding;
 import org.terasology.nui.databinding.DefaultBinding;
 import org.terasology.nui.databinding.ReadOnlyBinding;
 import org.terasology.nui.events.NUIMouseClickEvent;
+import org.terasology.nui.events.NUIMouseWheelEvent;
 
 import java.util.Iterator;
 import java.util.List;
@@ -56,8 +62,51 @@ public class InventoryGrid extends CoreWidget {
     @LayoutConfig
     private Binding<Integer> maxCellCount = new DefaultBinding<>(Integer.MAX_VALUE);
 
+    /**
+     * Defines the maximum amount of rows of cells displayed at once, 0 to display all of them.
+     * If set, cells are only created for the displayed rows and show other slots as the grid is scrolled, so that an
+     * inventory with thousands of slots costs no more than the rows on screen.
+     *
+     * Example: If an inventory has 2000 slots, maxHorizontalCells is set to 10 and maxVisibleRows to 5, the grid will
+     * have 50 cells, displaying slots 0 to 49 until it is scrolled down.
+     */
+    @LayoutConfig
+    private Binding<Integer> maxVisibleRows = new DefaultBinding<>(0);
+
+    /**
+     * The first row of cells displayed if {@link #maxVisibleRows} is set, e.g. bound to a scrollbar.
+     */
+    @LayoutConfig
+    private Binding<Integer> firstVisibleRow = new DefaultBinding<>(0);
+
+    /**
+     * The width of the canvas and of a cell the last time the grid was drawn, 0 if it has not been drawn yet.
+     */
+    private int drawnWidth;
+    private int drawnCellWidth;
+
+    /**
+     * The number of cells in a row the cells were last created and assigned slots for.
+     */
+    private int cellsHorizontalCells;
+
     private List<InventoryCell> cells = Lists.newArrayList();
 
+    /**
+     * What the cells display, taken once per frame.
+     */
+    private final InventoryViewModel viewModel = new InventoryViewModel();
+
+    /**
+     * The services passed to the cells, looked up once when the first cells are created.
+     */
+    private boolean servicesLookedUp;
+    private LocalPlayer localPlayer;
+    private InventoryManager inventoryManager;
+    private ItemTooltipCache tooltipCache;
+    private BlockIconCache blockIconCache;
+    private final SmartMoveSlots smartMoveSlots = new SmartMoveSlots();
+
     /**
      * EntityRef to an entity whose inventory will be accessed using this InventoryGrid.
      */
@@ -72,21 +121,43 @@ public class InventoryGrid extends CoreWidget {
             }
             return false;
         }
+
+        @Override
+        public boolean onMouseWheel(NUIMouseWheelEvent event) {
+            if (!isVirtualized()) {
+                return false;
+            }
+            // cells handle the wheel themselves, so this only scrolls when turned between them
+            setFirstVisibleRow(getFirstVisibleRow() - event.getWheelTurns());
+            return true;
+        }
     };
 
     @Override
     public void update(float delta) {
         super.update(delta);
+        updateCells();
+    }
 
-        int numSlots = getNumSlots();
+    /**
+     * Create or remove cells to match the slots to display, and take the view of those slots.
+     */
+    private void updateCells() {
+        cellsHorizontalCells = getHorizontalCells();
+        int numCells = getNumSlots();
+        if (isVirtualized()) {
+            setFirstVisibleRow(getFirstVisibleRow());
+            numCells = Math.min(numCells - getFirstVisibleSlot(), cellsHorizontalCells * getMaxVisibleRows());
+        }
 
         // allow the UI to grow or shrink the cell count if the inventory changes size
-        if (numSlots < cells.size()) {
-            for (int i = cells.size(); i > numSlots && i > 0; --i) {
+        if (numCells < cells.size()) {
+            for (int i = cells.size(); i > numCells && i > 0; --i) {
                 cells.remove(i - 1);
             }
-        } else if (numSlots > cells.size()) {
-            for (int i = cells.size(); i < numSlots && i < getMaxCellCount(); ++i) {
+        } else if (numCells > cells.size()) {
+            lookUpServices();
+            for (int i = cells.size(); i < numCells && i < getMaxCellCount(); ++i) {
                 InventoryCell cell = new InventoryCell();
                 cell.bindTargetInventory(new ReadOnlyBinding<EntityRef>() {
                     @Override
@@ -95,9 +166,25 @@ public class InventoryGrid extends CoreWidget {
                     }
                 });
                 cell.bindTargetSlot(new SlotBinding(i));
+                cell.setViewModel(viewModel);
+                cell.setServices(localPlayer, inventoryManager, smartMoveSlots);
+                cell.setCaches(tooltipCache, blockIconCache);
                 cells.add(cell);
             }
         }
+
+        viewModel.update(getTargetEntity(), getCellOffset() + getFirstVisibleSlot(), cells.size());
+    }
+
+    private void lookUpServices() {
+        if (!servicesLookedUp) {
+            localPlayer = CoreRegistry.get(LocalPlayer.class);
+            inventoryManager = CoreRegistry.get(InventoryManager.class);
+            tooltipCache = CoreRegistry.get(ItemTooltipCache.class);
+            blockIconCache = CoreRegistry.get(BlockIconCache.class);
+            viewModel.setBlockIconCache(blockIconCache);
+            servicesLookedUp = true;
+        }
     }
 
     @Override
@@ -112,7 +199,13 @@ public class InventoryGrid extends CoreWidget {
         }
         canvas.addInteractionRegion(interactionListener);
 
-        int horizontalCells = Math.max(1, Math.min(maxHorizontalCells, canvas.size().x() / cellSize.x()));
+        drawnWidth = canvas.size().x();
+        drawnCellWidth = cellSize.x();
+        int horizontalCells = getHorizontalCells();
+        if (horizontalCells != cellsHorizontalCells) {
+            // the grid has been resized, or is drawn for the first time, since the cells were updated
+            updateCells();
+        }
         for (int i = 0; i < numSlots && i < cells.size(); ++i) {
             int horizPos = i % horizontalCells;
             int vertPos = i / horizontalCells;
@@ -134,6 +227,9 @@ public class InventoryGrid extends CoreWidget {
         }
         int horizontalCells = Math.min(Math.min(maxHorizontalCells, numSlots), sizeHint.x() / cellSize.x());
         int verticalCells = ((numSlots - 1) / horizontalCells) + 1;
+        if (isVirtualized()) {
+            verticalCells = Math.min(verticalCells, getMaxVisibleRows());
+        }
         return new Vector2i(horizontalCells * cellSize.x, verticalCells * cellSize.y);
     }
 
@@ -251,6 +347,92 @@ public class InventoryGrid extends CoreWidget {
         maxCellCount.set(val);
     }
 
+    /**
+     * Binds the maximum amount of rows of cells displayed at once.
+     *
+     * @param binding A Binding of the Integer type, 0 to display all rows.
+     */
+    public void bindMaxVisibleRows(Binding<Integer> binding) {
+        maxVisibleRows = binding;
+    }
+
+    /**
+     * Gets the maximum amount of rows of cells displayed at once.
+     *
+     * @return The maximum amount of rows displayed at once, 0 if all rows are displayed.
+     */
+    public int getMaxVisibleRows() {
+        return maxVisibleRows.get();
+    }
+
+    /**
+     * Sets the maximum amount of rows of cells displayed at once.
+     *
+     * @param val The maximum amount of rows displayed at once, 0 to display all rows.
+     */
+    public void setMaxVisibleRows(int val) {
+        maxVisibleRows.set(val);
+    }
+
+    /**
+     * Binds the first row of cells displayed, when only some rows are displayed.
+     *
+     * @param binding A Binding of the Integer type.
+     */
+    public void bindFirstVisibleRow(Binding<Integer> binding) {
+        firstVisibleRow = binding;
+    }
+
+    /**
+     * Gets the first row of cells displayed.
+     *
+     * @return The first row of cells displayed, 0 if all rows are displayed.
+     */
+    public int getFirstVisibleRow() {
+        return isVirtualized() ? firstVisibleRow.get() : 0;
+    }
+
+    /**
+     * Scrolls the grid to the given row, as far as there are rows to display.
+     *
+     * @param val The first row of cells to display.
+     */
+    public void setFirstVisibleRow(int val) {
+        int lastFirstRow = Math.max(0, getRowCount() - getMaxVisibleRows());
+        int row = Math.max(0, Math.min(val, lastFirstRow));
+        if (row != firstVisibleRow.get()) {
+            firstVisibleRow.set(row);
+        }
+    }
+
+    /**
+     * Gets the amount of rows of cells needed to display all slots, e.g. for the range of a scrollbar.
+     *
+     * @return The amount of rows needed to display all slots.
+     */
+    public int getRowCount() {
+        int numSlots = getNumSlots();
+        return numSlots > 0 ? (numSlots - 1) / getHorizontalCells() + 1 : 0;
+    }
+
+    /**
+     * @return the number of cells in a row that fit into the width the grid was last drawn with
+     */
+    private int getHorizontalCells() {
+        if (drawnWidth == 0 || drawnCellWidth == 0) {
+            return Math.max(1, maxHorizontalCells);
+        }
+        return Math.max(1, Math.min(maxHorizontalCells, drawnWidth / drawnCellWidth));
+    }
+
+    private boolean isVirtualized() {
+        return getMaxVisibleRows() > 0;
+    }
+
+    private int getFirstVisibleSlot() {
+        return getFirstVisibleRow() * getHorizontalCells();
+    }
+
     /**
      * Gets the amount of cells this widget displays.
      *
@@ -273,7 +455,7 @@ public class InventoryGrid extends CoreWidget {
 
         @Override
         public Integer get() {
-            return getCellOffset() + slot;
+            return getCellOffset() + getFirstVisibleSlot() + slot;
         }
     }
 
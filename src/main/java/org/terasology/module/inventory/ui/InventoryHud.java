@@ -10,9 +10,15 @@ import org.terasology.engine.registry.In;
 import org.terasology.engine.rendering.nui.layers.hud.CoreHudWidget;
 import org.terasology.engine.rendering.nui.layers.hud.UICrosshair;
 import org.terasology.module.inventory.components.SelectedInventorySlotComponent;
+import org.terasology.module.inventory.systems.BlockIconCache;
+import org.terasology.module.inventory.systems.InventoryManager;
+import org.terasology.module.inventory.systems.ItemTooltipCache;
 import org.terasology.nui.LayoutConfig;
 import org.terasology.nui.databinding.ReadOnlyBinding;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class InventoryHud extends CoreHudWidget {
 
     @In
@@ -21,15 +27,35 @@ public class InventoryHud extends CoreHudWidget {
     @In
     private Time time;
 
+    @In
+    private InventoryManager inventoryManager;
+
+    @In
+    private ItemTooltipCache tooltipCache;
+
+    @In
+    private BlockIconCache blockIconCache;
+
     private UICrosshair crosshair;
 
+    /**
+     * What the cells display, taken once per frame.
+     */
+    private final InventoryViewModel viewModel = new InventoryViewModel();
+
+    private final List<InventoryCell> cells = new ArrayList<>();
+
+    private final SmartMoveSlots smartMoveSlots = new SmartMoveSlots();
+
     // Set "true" to use the rotating style quickslot; set "false" to get the default style quickslot
     @LayoutConfig
     private boolean rotateItems = false;
 
     @Override
     public void initialise() {
+        viewModel.setBlockIconCache(blockIconCache);
         for (InventoryCell cell : findAll(InventoryCell.class)) {
+            cells.add(cell);
             int offset = cell.getTargetSlot();
             if (rotateItems) {
                 cell.bindTargetSlot(new TargetSlotBinding(offset, localPlayer));
@@ -42,11 +68,30 @@ public class InventoryHud extends CoreHudWidget {
                     return localPlayer.getCharacterEntity();
                 }
             });
+            cell.setViewModel(viewModel);
+            cell.setServices(localPlayer, inventoryManager, smartMoveSlots);
+            cell.setCaches(tooltipCache, blockIconCache);
         }
 
         crosshair = find("crosshair", UICrosshair.class);
     }
 
+    @Override
+    public void update(float delta) {
+        // only snapshot the slots the toolbar shows, which move along when the items rotate
+        int firstSlot = Integer.MAX_VALUE;
+        int lastSlot = -1;
+        for (InventoryCell cell : cells) {
+            int slot = cell.getTargetSlot();
+            firstSlot = Math.min(firstSlot, slot);
+            lastSlot = Math.max(lastSlot, slot);
+        }
+        if (lastSlot >= firstSlot) {
+            viewModel.update(localPlayer.getCharacterEntity(), firstSlot, lastSlot - firstSlot + 1);
+        }
+        super.update(delta);
+    }
+
     public void setChargeAmount(float amount) {
         crosshair.setChargeAmount(amount);
     }
@@ -0,0 +1,191 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.ui;
+
+import com.google.common.primitives.UnsignedBytes;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.logic.common.DisplayNameComponent;
+import org.terasology.engine.logic.inventory.ItemComponent;
+import org.terasology.engine.rendering.assets.mesh.Mesh;
+import org.terasology.engine.rendering.assets.texture.TextureRegion;
+import org.terasology.engine.utilities.Assets;
+import org.terasology.engine.world.block.family.BlockFamily;
+import org.terasology.engine.world.block.items.BlockItemComponent;
+import org.terasology.module.inventory.components.InventoryComponent;
+import org.terasology.module.inventory.systems.BlockIconCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * What the cells showing a range of slots of an inventory display, taken once per frame by {@link #update} so that
+ * the bindings of the cells, which are evaluated several times per frame, do not need to look at the items.
+ * <p>
+ * Only the stack size is read anew on every update. Icon, mesh and display name are resolved when a slot gets another
+ * item, or the item another {@link ItemComponent}, icon, display name or block family. Block items are shown with the
+ * icon of their family from the {@link BlockIconCache}, if one is set and has one, and as mesh otherwise.
+ */
+public final class InventoryViewModel {
+    private EntityRef inventory = EntityRef.NULL;
+    private int firstSlot;
+    private final List<SlotView> slots = new ArrayList<>();
+    private BlockIconCache blockIconCache;
+
+    /**
+     * @param blockIconCache the cache to take the icons of block items from, null to show them as mesh
+     */
+    public void setBlockIconCache(BlockIconCache blockIconCache) {
+        if (this.blockIconCache != blockIconCache) {
+            this.blockIconCache = blockIconCache;
+            slots.clear();
+        }
+    }
+
+    /**
+     * Take a snapshot of the given slots of an inventory, reusing what is still current of the previous one.
+     *
+     * @param inventoryEntity the entity holding the inventory
+     * @param fromSlot the first slot to take
+     * @param slotCount the maximum number of slots to take
+     */
+    public void update(EntityRef inventoryEntity, int fromSlot, int slotCount) {
+        InventoryComponent inventoryComponent = inventoryEntity.getComponent(InventoryComponent.class);
+        int size = inventoryComponent != null
+                ? Math.max(0, Math.min(slotCount, inventoryComponent.itemSlots.size() - fromSlot))
+                : 0;
+        if (!inventoryEntity.equals(inventory) || fromSlot != firstSlot) {
+            slots.clear();
+        }
+        inventory = inventoryEntity;
+        firstSlot = fromSlot;
+
+        while (slots.size() > size) {
+            slots.remove(slots.size() - 1);
+        }
+        for (int i = 0; i < size; i++) {
+            EntityRef item = inventoryComponent.itemSlots.get(fromSlot + i);
+            ItemComponent itemComponent = item.getComponent(ItemComponent.class);
+            if (i == slots.size()) {
+                slots.add(new SlotView(item, itemComponent, blockIconCache));
+            } else if (slots.get(i).isOf(item, itemComponent)) {
+                slots.get(i).updateQuantity(itemComponent);
+            } else {
+                slots.set(i, new SlotView(item, itemComponent, blockIconCache));
+            }
+        }
+    }
+
+    /**
+     * @return the entity holding the inventory of the last snapshot
+     */
+    public EntityRef getInventory() {
+        return inventory;
+    }
+
+    /**
+     * @param inventoryEntity the entity holding the inventory
+     * @param slot the slot of the inventory
+     * @return the snapshot of the slot, or null if the last snapshot did not include it
+     */
+    public SlotView getSlot(EntityRef inventoryEntity, int slot) {
+        int index = slot - firstSlot;
+        if (index < 0 || index >= slots.size() || !inventoryEntity.equals(inventory)) {
+            return null;
+        }
+        return slots.get(index);
+    }
+
+    /**
+     * What a cell displays for one item.
+     */
+    public static final class SlotView {
+        private final EntityRef item;
+        private final ItemComponent itemComponent;
+        private final TextureRegion itemIcon;
+        private final TextureRegion icon;
+        private final BlockFamily blockFamily;
+        private final Mesh mesh;
+        private final String displayName;
+        private int quantity;
+
+        /**
+         * @param blockIconCache the cache to take the icon of a block item from, null to show it as mesh
+         */
+        public SlotView(EntityRef item, ItemComponent itemComponent, BlockIconCache blockIconCache) {
+            this.item = item;
+            this.itemComponent = itemComponent;
+            this.itemIcon = itemComponent != null ? itemComponent.icon : null;
+
+            blockFamily = getBlockFamily(item);
+            boolean isBlock = blockFamily != null;
+            if (!item.exists()) {
+                icon = null;
+            } else if (itemIcon != null) {
+                icon = itemIcon;
+            } else if (!isBlock) {
+                icon = Assets.getTextureRegion("engine:items#questionMark").get();
+            } else if (blockIconCache != null) {
+                icon = blockIconCache.getIcon(blockFamily);
+            } else {
+                icon = null;
+            }
+            mesh = isBlock && icon == null ? blockFamily.getArchetypeBlock().getMeshGenerator().getStandaloneMesh() : null;
+
+            displayName = getDisplayName(item);
+            updateQuantity(itemComponent);
+        }
+
+        private static BlockFamily getBlockFamily(EntityRef item) {
+            BlockItemComponent blockItemComp = item.getComponent(BlockItemComponent.class);
+            return blockItemComp != null ? blockItemComp.blockFamily : null;
+        }
+
+        private static String getDisplayName(EntityRef item) {
+            DisplayNameComponent displayNameComponent = item.getComponent(DisplayNameComponent.class);
+            return displayNameComponent != null ? displayNameComponent.name : null;
+        }
+
+        /**
+         * The display name and block family are compared by value, as they may be changed in place. A view whose icon
+         * has been disposed of, e.g. by an asset reload, describes no item.
+         *
+         * @return whether this still describes the given item, apart from its stack size
+         */
+        public boolean isOf(EntityRef otherItem, ItemComponent otherItemComponent) {
+            return item == otherItem && itemComponent == otherItemComponent
+                    && (itemComponent == null || itemComponent.icon == itemIcon)
+                    && blockFamily == getBlockFamily(otherItem)
+                    && Objects.equals(displayName, getDisplayName(otherItem))
+                    && (icon == null || !icon.getTexture().isDisposed());
+        }
+
+        void updateQuantity(ItemComponent currentItemComponent) {
+            quantity = currentItemComponent != null ? UnsignedBytes.toInt(currentItemComponent.stackCount) : 1;
+        }
+
+        public EntityRef getItem() {
+            return item;
+        }
+
+        public TextureRegion getIcon() {
+            return icon;
+        }
+
+        public Mesh getMesh() {
+            return mesh;
+        }
+
+        /**
+         * @return the name from the {@link DisplayNameComponent} of the item, null if it has none
+         */
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+    }
+}
@@ -3,16 +3,16 @@
 
 package org.terasology.module.inventory.ui;
 
-import com.google.common.primitives.UnsignedBytes;
 import org.joml.Vector2i;
 import org.terasology.engine.entitySystem.entity.EntityRef;
-import org.terasology.engine.logic.common.DisplayNameComponent;
 import org.terasology.engine.logic.inventory.ItemComponent;
+import org.terasology.engine.registry.CoreRegistry;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.rendering.assets.texture.Texture;
 import org.terasology.engine.rendering.assets.texture.TextureRegion;
 import org.terasology.engine.utilities.Assets;
-import org.terasology.engine.world.block.items.BlockItemComponent;
+import org.terasology.module.inventory.systems.BlockIconCache;
+import org.terasology.module.inventory.systems.ItemTooltipCache;
 import org.terasology.nui.Canvas;
 import org.terasology.nui.CoreWidget;
 import org.terasology.nui.LayoutConfig;
@@ -32,48 +32,37 @@ public abstract class ItemCell extends CoreWidget {
     @LayoutConfig
     private Binding<Boolean> selected = new DefaultBinding<>(false);
 
+    /**
+     * The view of the target item used when the cell is not given one by an {@link InventoryViewModel}.
+     */
+    private InventoryViewModel.SlotView ownView;
+
+    private ItemTooltipCache tooltipCache;
+    private BlockIconCache blockIconCache;
+
     public ItemCell() {
         icon.bindTooltipLines(
                 new ReadOnlyBinding<List<TooltipLine>>() {
                     @Override
                     public List<TooltipLine> get() {
-                        GetItemTooltip itemTooltip;
-
-                        DisplayNameComponent displayNameComponent = getTargetItem().getComponent(DisplayNameComponent.class);
-                        if (displayNameComponent != null) {
-                            itemTooltip = new GetItemTooltip(displayNameComponent.name);
-                        } else {
-                            itemTooltip = new GetItemTooltip();
+                        EntityRef item = getTargetView().getItem();
+                        ItemTooltipCache cache = getTooltipCache();
+                        if (cache == null) {
+                            return ItemTooltipCache.collectTooltipLines(item);
                         }
-                        getTargetItem().send(itemTooltip);
-
-                        return itemTooltip.getTooltipLines();
+                        return cache.getTooltipLines(item);
                     }
                 });
         icon.bindIcon(new ReadOnlyBinding<TextureRegion>() {
             @Override
             public TextureRegion get() {
-                if (getTargetItem().exists()) {
-                    ItemComponent itemComp = getTargetItem().getComponent(ItemComponent.class);
-                    if (itemComp != null && itemComp.icon != null) {
-                        return itemComp.icon;
-                    }
-                    BlockItemComponent blockItemComp = getTargetItem().getComponent(BlockItemComponent.class);
-                    if (blockItemComp == null || blockItemComp.blockFamily == null) {
-                        return Assets.getTextureRegion("engine:items#questionMark").get();
-                    }
-                }
-                return null;
+                return getTargetView().getIcon();
             }
         });
         icon.bindMesh(new ReadOnlyBinding<Mesh>() {
             @Override
             public Mesh get() {
-                BlockItemComponent blockItemComp = getTargetItem().getComponent(BlockItemComponent.class);
-                if (blockItemComp != null && blockItemComp.blockFamily != null) {
-                    return blockItemComp.blockFamily.getArchetypeBlock().getMeshGenerator().getStandaloneMesh();
-                }
-                return null;
+                return getTargetView().getMesh();
             }
         });
         Optional<Texture> terrainTex = Assets.getTexture("engine:terrain");
@@ -85,22 +74,19 @@ public abstract class ItemCell extends CoreWidget {
         icon.bindQuantity(new ReadOnlyBinding<Integer>() {
             @Override
             public Integer get() {
-                ItemComponent itemComp = getTargetItem().getComponent(ItemComponent.class);
-                if (itemComp != null) {
-                    return UnsignedBytes.toInt(itemComp.stackCount);
-                }
-                return 1;
+                return getTargetView().getQuantity();
             }
         });
     }
 
     @Override
     public void onDraw(Canvas canvas) {
-        getTargetItem().send(new BeforeInventoryCellRendered(canvas));
+        EntityRef item = getTargetView().getItem();
+        item.send(new BeforeInventoryCellRendered(canvas));
 
         canvas.drawWidget(icon);
 
-        getTargetItem().send(new InventoryCellRendered(canvas));
+        item.send(new InventoryCellRendered(canvas));
     }
 
     @Override
@@ -110,6 +96,55 @@ public abstract class ItemCell extends CoreWidget {
 
     public abstract EntityRef getTargetItem();
 
+    /**
+     * @return what to display for the target item
+     */
+    protected InventoryViewModel.SlotView getTargetView() {
+        EntityRef item = getTargetItem();
+        ItemComponent itemComp = item.getComponent(ItemComponent.class);
+        if (ownView == null || !ownView.isOf(item, itemComp)) {
+            ownView = new InventoryViewModel.SlotView(item, itemComp, getBlockIconCache());
+        } else {
+            ownView.updateQuantity(itemComp);
+        }
+        return ownView;
+    }
+
+    /**
+     * Use the given caches rather than looking them up, so that the cells of a grid or screen share them.
+     *
+     * @param tooltipCache the cache to take the tooltip of the target item from
+     * @param blockIconCache the cache to take the icon of a target block item from, unless given a view of it
+     */
+    public void setCaches(ItemTooltipCache tooltipCache, BlockIconCache blockIconCache) {
+        this.tooltipCache = tooltipCache;
+        this.blockIconCache = blockIconCache;
+    }
+
+    /**
+     * Collect the tooltip of the target item anew, e.g. because it is about to be shown.
+     */
+    protected void refreshTooltip() {
+        ItemTooltipCache cache = getTooltipCache();
+        if (cache != null) {
+            cache.invalidate(getTargetView().getItem());
+        }
+    }
+
+    private ItemTooltipCache getTooltipCache() {
+        if (tooltipCache == null) {
+            tooltipCache = CoreRegistry.get(ItemTooltipCache.class);
+        }
+        return tooltipCache;
+    }
+
+    private BlockIconCache getBlockIconCache() {
+        if (blockIconCache == null) {
+            blockIconCache = CoreRegistry.get(BlockIconCache.class);
+        }
+        return blockIconCache;
+    }
+
     public void bindSelected(Binding<Boolean> binding) {
         selected = binding;
     }
@@ -4,8 +4,10 @@
 package org.terasology.module.inventory.ui;
 
 import org.joml.Quaternionf;
+import org.joml.Quaternionfc;
 import org.joml.Vector2i;
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.rendering.assets.texture.Texture;
 import org.terasology.engine.rendering.assets.texture.TextureRegion;
@@ -29,6 +31,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class ItemIcon extends CoreWidget {
+    private static final Quaternionfc MESH_ROTATION = new Quaternionf().rotationYXZ(TeraMath.PI / 6, -TeraMath.PI / 12, 0);
+    private static final Vector3fc MESH_OFFSET = new Vector3f();
 
     @LayoutConfig
     private Binding<TextureRegion> icon = new DefaultBinding<>();
@@ -58,10 +62,9 @@ public class ItemIcon extends CoreWidget {
         if (getIcon() != null) {
             canvas.drawTexture(getIcon());
         } else if (getMesh() != null && getMeshTexture() != null) {
-            Quaternionf rotation = new Quaternionf().rotationYXZ(TeraMath.PI / 6, -TeraMath.PI / 12, 0);
             CanvasUtility.drawMesh(
-                canvas, getMesh(), getMeshTexture(), canvas.getRegion(), rotation,
-                new Vector3f(), 1f
+                canvas, getMesh(), getMeshTexture(), canvas.getRegion(), MESH_ROTATION,
+                MESH_OFFSET, 1f
             );
         }
         if (getQuantity() > 1) {
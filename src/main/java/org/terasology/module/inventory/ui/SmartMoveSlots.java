@@ -0,0 +1,78 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.ui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The slots {@link InventoryCell}s move an item to when it is shift-clicked. The owner of the cells passes one instance
+ * to all of them, so that the lists are built once when first needed after the cells were created rather than on
+ * every click, and only built anew when the inventory they are for changes its size.
+ */
+public final class SmartMoveSlots {
+    /**
+     * The number of slots at the start of the inventory of a player that are shown in the toolbar.
+     */
+    static final int HUD_SLOT_COUNT = 10; // TODO use a constant once there is one
+
+    private final SlotRange hudSlots = new SlotRange();
+    private final SlotRange backpackSlots = new SlotRange();
+    private final SlotRange playerSlots = new SlotRange();
+    private final SlotRange targetSlots = new SlotRange();
+
+    /**
+     * @return the slots of the inventory of a player shown in the toolbar
+     */
+    public List<Integer> getHudSlots() {
+        return hudSlots.get(0, HUD_SLOT_COUNT);
+    }
+
+    /**
+     * @param playerSlotCount the number of slots of the inventory of the player
+     * @return the slots of the inventory of a player not shown in the toolbar
+     */
+    public List<Integer> getBackpackSlots(int playerSlotCount) {
+        return backpackSlots.get(HUD_SLOT_COUNT, playerSlotCount);
+    }
+
+    /**
+     * @param playerSlotCount the number of slots of the inventory of the player
+     * @return all slots of the inventory of a player
+     */
+    public List<Integer> getPlayerSlots(int playerSlotCount) {
+        return playerSlots.get(0, playerSlotCount);
+    }
+
+    /**
+     * @param targetSlotCount the number of slots of the inventory the player interacts with
+     * @return all slots of the inventory the player interacts with
+     */
+    public List<Integer> getTargetSlots(int targetSlotCount) {
+        return targetSlots.get(0, targetSlotCount);
+    }
+
+    /**
+     * The numbers of a range of slots, kept until asked for another range.
+     */
+    private static final class SlotRange {
+        private int start;
+        private int exclusiveEnd = -1;
+        private List<Integer> slots = Collections.emptyList();
+
+        private List<Integer> get(int from, int to) {
+            if (from != start || to != exclusiveEnd) {
+                List<Integer> numbers = new ArrayList<>(Math.max(0, to - from));
+                for (int number = from; number < to; number++) {
+                    numbers.add(number);
+                }
+                slots = Collections.unmodifiableList(numbers);
+                start = from;
+                exclusiveEnd = to;
+            }
+            return slots;
+        }
+    }
+}
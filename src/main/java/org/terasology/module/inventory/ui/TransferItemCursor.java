@@ -13,6 +13,7 @@ import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.rendering.assets.texture.TextureRegion;
 import org.terasology.engine.utilities.Assets;
 import org.terasology.engine.world.block.items.BlockItemComponent;
+import org.terasology.module.inventory.systems.BlockIconCache;
 import org.terasology.module.inventory.systems.InventoryUtils;
 import org.terasology.nui.ControlWidget;
 import org.terasology.nui.databinding.Binding;
@@ -26,6 +27,8 @@ public class TransferItemCursor extends CursorAttachment implements ControlWidge
 
     @In
     private LocalPlayer localPlayer;
+    @In
+    private BlockIconCache blockIconCache;
 
     @Override
     public void initialise() {
@@ -36,11 +39,14 @@ public class TransferItemCursor extends CursorAttachment implements ControlWidge
             public TextureRegion get() {
                 if (getItem().exists()) {
                     ItemComponent itemComp = getItem().getComponent(ItemComponent.class);
-                    if (itemComp != null) {
+                    if (itemComp != null && itemComp.icon != null) {
                         return itemComp.icon;
                     }
                     BlockItemComponent blockItemComp = getItem().getComponent(BlockItemComponent.class);
-                    if (blockItemComp == null || blockItemComp.blockFamily == null) {
+                    if (blockItemComp != null && blockItemComp.blockFamily != null) {
+                        return blockIconCache.getIcon(blockItemComp.blockFamily);
+                    }
+                    if (itemComp == null) {
                         return Assets.getTextureRegion("engine:items#questionMark").orElse(null);
                     }
                 }
@@ -51,7 +57,8 @@ public class TransferItemCursor extends CursorAttachment implements ControlWidge
             @Override
             public Mesh get() {
                 BlockItemComponent blockItemComp = getItem().getComponent(BlockItemComponent.class);
-                if (blockItemComp != null && blockItemComp.blockFamily != null) {
+                if (blockItemComp != null && blockItemComp.blockFamily != null
+                        && blockIconCache.getIcon(blockItemComp.blockFamily) == null) {
                     return blockItemComp.blockFamily.getArchetypeBlock().getMeshGenerator().getStandaloneMesh();
                 }
                 return null;
@@ -0,0 +1,203 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.components;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.prefab.Prefab;
+import org.terasology.engine.logic.inventory.ItemComponent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+public class ItemSlotListTest {
+    private List<EntityRef> items;
+
+    @BeforeEach
+    public void setup() {
+        items = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            items.add(Mockito.mock(EntityRef.class));
+        }
+    }
+
+    @Test
+    public void findsItemsPutIntoSlots() {
+        InventoryComponent inventory = new InventoryComponent(5);
+        inventory.itemSlots.set(1, items.get(0));
+        inventory.itemSlots.set(3, items.get(1));
+
+        assertEquals(1, inventory.findSlot(items.get(0)));
+        assertEquals(3, inventory.findSlot(items.get(1)));
+        assertEquals(-1, inventory.findSlot(items.get(2)));
+        assertEquals(0, inventory.findSlot(EntityRef.NULL));
+        assertIndexConsistent(inventory.itemSlots);
+    }
+
+    @Test
+    public void forgetsItemsTakenOutOfSlots() {
+        InventoryComponent inventory = new InventoryComponent(5);
+        inventory.itemSlots.set(1, items.get(0));
+        inventory.itemSlots.set(1, items.get(1));
+
+        assertEquals(-1, inventory.findSlot(items.get(0)));
+        assertEquals(1, inventory.findSlot(items.get(1)));
+        assertIndexConsistent(inventory.itemSlots);
+    }
+
+    @Test
+    public void followsShiftedSlots() {
+        ItemSlotList slots = new ItemSlotList(Arrays.asList(items.get(0), items.get(1), items.get(2)));
+        slots.remove(0);
+        slots.add(1, items.get(3));
+
+        assertEquals(0, slots.slotOf(items.get(1)));
+        assertEquals(1, slots.slotOf(items.get(3)));
+        assertEquals(2, slots.slotOf(items.get(2)));
+        assertEquals(-1, slots.slotOf(items.get(0)));
+        assertIndexConsistent(slots);
+    }
+
+    @Test
+    public void findsFirstSlotOfDuplicateItem() {
+        ItemSlotList slots = new ItemSlotList(Arrays.asList(EntityRef.NULL, EntityRef.NULL, EntityRef.NULL));
+        slots.set(2, items.get(0));
+        slots.set(1, items.get(0));
+
+        assertEquals(1, slots.slotOf(items.get(0)));
+
+        slots.set(1, EntityRef.NULL);
+        assertEquals(2, slots.slotOf(items.get(0)));
+        assertIndexConsistent(slots);
+    }
+
+    @Test
+    public void wrapsReplacedSlotList() {
+        InventoryComponent inventory = new InventoryComponent();
+        inventory.itemSlots = new ArrayList<>(Arrays.asList(EntityRef.NULL, items.get(0)));
+
+        assertEquals(1, inventory.findSlot(items.get(0)));
+        assertIndexConsistent(inventory.itemSlots);
+    }
+
+    @Test
+    public void keepsCopiesIndependent() {
+        InventoryComponent inventory = new InventoryComponent(3);
+        inventory.itemSlots.set(0, items.get(0));
+        InventoryComponent copy = new InventoryComponent();
+        copy.copyFrom(inventory);
+
+        copy.itemSlots.set(1, items.get(1));
+        inventory.itemSlots.set(0, items.get(2));
+        inventory.itemSlots.add(items.get(3));
+
+        assertEquals(Arrays.asList(items.get(2), EntityRef.NULL, EntityRef.NULL, items.get(3)), inventory.itemSlots);
+        assertEquals(Arrays.asList(items.get(0), items.get(1), EntityRef.NULL), copy.itemSlots);
+        assertEquals(0, copy.findSlot(items.get(0)));
+        assertEquals(-1, inventory.findSlot(items.get(0)));
+        assertIndexConsistent(inventory.itemSlots);
+        assertIndexConsistent(copy.itemSlots);
+    }
+
+    @Test
+    public void tracksChangedSlots() {
+        ItemSlotList slots = new ItemSlotList(Arrays.asList(EntityRef.NULL, EntityRef.NULL, EntityRef.NULL));
+        slots.set(0, items.get(0));
+        slots.set(2, items.get(1));
+        slots.set(1, EntityRef.NULL);
+
+        BitSet changed = slots.drainChangedSlots();
+        assertEquals(2, changed.cardinality());
+        assertTrue(changed.get(0));
+        assertTrue(changed.get(2));
+        assertTrue(slots.drainChangedSlots().isEmpty());
+
+        slots.set(1, items.get(2));
+        slots.add(EntityRef.NULL);
+        assertNull(slots.drainChangedSlots());
+        assertTrue(slots.drainChangedSlots().isEmpty());
+    }
+
+    @Test
+    public void countsItemsByPrefab() {
+        Prefab prefab = Mockito.mock(Prefab.class);
+        ItemComponent item1 = stackOf(items.get(0), prefab, 3);
+        stackOf(items.get(1), prefab, 4);
+        ItemSlotList slots = new ItemSlotList(Arrays.asList(items.get(0), EntityRef.NULL, items.get(1)));
+        assertEquals(7, slots.countWithPrefab(prefab));
+
+        item1.stackCount = 1;
+        assertEquals(7, slots.countWithPrefab(prefab));
+        slots.refresh(0);
+        assertEquals(5, slots.countWithPrefab(prefab));
+
+        slots.remove(2);
+        assertEquals(1, slots.countWithPrefab(prefab));
+        slots.set(0, EntityRef.NULL);
+        assertEquals(0, slots.countWithPrefab(prefab));
+    }
+
+    @Test
+    public void staysConsistentUnderRandomChanges() {
+        Random random = new Random(42);
+        ItemSlotList slots = new ItemSlotList();
+        for (int i = 0; i < 10; i++) {
+            slots.add(EntityRef.NULL);
+        }
+
+        for (int step = 0; step < 2000; step++) {
+            int operation = random.nextInt(10);
+            if (operation == 0 && slots.size() < 20) {
+                slots.add(random.nextInt(slots.size() + 1), randomItem(random));
+            } else if (operation == 1 && slots.size() > 1) {
+                slots.remove(random.nextInt(slots.size()));
+            } else {
+                slots.set(random.nextInt(slots.size()), randomItem(random));
+            }
+            assertIndexConsistent(slots);
+        }
+    }
+
+    private static ItemComponent stackOf(EntityRef itemEntity, Prefab prefab, int stackCount) {
+        ItemComponent item = new ItemComponent();
+        item.stackCount = (byte) stackCount;
+        when(itemEntity.getComponent(ItemComponent.class)).thenReturn(item);
+        when(itemEntity.getParentPrefab()).thenReturn(prefab);
+        return item;
+    }
+
+    private EntityRef randomItem(Random random) {
+        int index = random.nextInt(items.size() + 2);
+        return index < items.size() ? items.get(index) : EntityRef.NULL;
+    }
+
+    /**
+     * Compare every index lookup with a plain scan of the slots.
+     */
+    private void assertIndexConsistent(List<EntityRef> slots) {
+        ItemSlotList indexed = slots instanceof ItemSlotList ? (ItemSlotList) slots : new ItemSlotList(slots);
+        List<EntityRef> probes = new ArrayList<>(items);
+        probes.add(EntityRef.NULL);
+        for (EntityRef probe : probes) {
+            int expected = -1;
+            for (int i = 0; i < indexed.size(); i++) {
+                if (indexed.get(i) == probe) {
+                    expected = i;
+                    break;
+                }
+            }
+            assertEquals(expected, indexed.slotOf(probe));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.systems;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.terasology.engine.rendering.assets.texture.Texture;
+import org.terasology.engine.rendering.assets.texture.TextureRegion;
+import org.terasology.engine.world.block.family.BlockFamily;
+
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+
+public class BlockIconCacheTest {
+    private Function<BlockFamily, TextureRegion> iconFactory;
+    private BlockIconCache blockIconCache;
+    private BlockFamily family;
+    private Texture texture;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        iconFactory = Mockito.mock(Function.class);
+        blockIconCache = new BlockIconCache(iconFactory);
+        family = Mockito.mock(BlockFamily.class);
+        texture = Mockito.mock(Texture.class);
+    }
+
+    @Test
+    public void lookUpIconOncePerFamily() {
+        TextureRegion icon = icon(texture);
+        when(iconFactory.apply(family)).thenReturn(icon);
+
+        assertSame(icon, blockIconCache.getIcon(family));
+        assertSame(icon, blockIconCache.getIcon(family));
+
+        Mockito.verify(iconFactory).apply(family);
+        assertEquals(1, blockIconCache.getMisses());
+        assertEquals(1, blockIconCache.getHits());
+    }
+
+    @Test
+    public void lookUpIconAnewOnceItsTextureIsDisposed() {
+        TextureRegion icon = icon(texture);
+        Texture reloadedTexture = Mockito.mock(Texture.class);
+        TextureRegion reloadedIcon = icon(reloadedTexture);
+        when(iconFactory.apply(family)).thenReturn(icon, reloadedIcon);
+
+        assertSame(icon, blockIconCache.getIcon(family));
+        when(texture.isDisposed()).thenReturn(true);
+
+        assertSame(reloadedIcon, blockIconCache.getIcon(family));
+        assertSame(reloadedIcon, blockIconCache.getIcon(family));
+        assertEquals(2, blockIconCache.getMisses());
+        assertEquals(1, blockIconCache.getHits());
+    }
+
+    @Test
+    public void keepAskingForFamiliesWithoutIcon() {
+        assertNull(blockIconCache.getIcon(family));
+        assertNull(blockIconCache.getIcon(family));
+
+        Mockito.verify(iconFactory, times(2)).apply(family);
+        assertEquals(2, blockIconCache.getMisses());
+        assertEquals(0, blockIconCache.getHits());
+    }
+
+    @Test
+    public void lookUpIconAnewAfterClear() {
+        TextureRegion icon = icon(texture);
+        when(iconFactory.apply(family)).thenReturn(icon);
+
+        blockIconCache.getIcon(family);
+        blockIconCache.clear();
+        blockIconCache.getIcon(family);
+
+        Mockito.verify(iconFactory, times(2)).apply(family);
+        assertEquals(2, blockIconCache.getMisses());
+    }
+
+    private static TextureRegion icon(Texture texture) {
+        TextureRegion icon = Mockito.mock(TextureRegion.class);
+        when(icon.getTexture()).thenReturn(texture);
+        return icon;
+    }
+}
@@ -0,0 +1,147 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.systems;
+
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.prefab.Prefab;
+import org.terasology.gestalt.entitysystem.component.Component;
+import org.terasology.gestalt.entitysystem.event.Event;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A minimal in-memory entity, so that timing tests measure the inventory code rather than mocks or an entity manager,
+ * and other tests can look at the items and nested inventories an operation created.
+ * <p>
+ * Components are kept in a map and handed out as is; events are not delivered to anyone, so nothing is ever vetoed.
+ */
+final class InMemoryEntity extends EntityRef {
+    private static long nextId = 1;
+
+    private final long id = nextId++;
+    private final Map<Class<?>, Component> components = new LinkedHashMap<>();
+    private boolean exists = true;
+
+    InMemoryEntity(Component... components) {
+        for (Component component : components) {
+            this.components.put(component.getClass(), component);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public EntityRef copy() {
+        InMemoryEntity copy = new InMemoryEntity();
+        for (Component component : components.values()) {
+            try {
+                Component componentCopy = component.getClass().getDeclaredConstructor().newInstance();
+                componentCopy.copyFrom(component);
+                copy.components.put(componentCopy.getClass(), componentCopy);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot copy " + component.getClass(), e);
+            }
+        }
+        return copy;
+    }
+
+    @Override
+    public boolean exists() {
+        return exists;
+    }
+
+    @Override
+    public boolean isActive() {
+        return exists;
+    }
+
+    @Override
+    public void destroy() {
+        exists = false;
+        components.clear();
+    }
+
+    @Override
+    public <T extends Event> T send(T event) {
+        return event;
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
+
+    @Override
+    public void setPersistent(boolean persistent) {
+    }
+
+    @Override
+    public boolean isAlwaysRelevant() {
+        return false;
+    }
+
+    @Override
+    public void setAlwaysRelevant(boolean alwaysRelevant) {
+    }
+
+    @Override
+    public EntityRef getOwner() {
+        return EntityRef.NULL;
+    }
+
+    @Override
+    public void setOwner(EntityRef owner) {
+    }
+
+    @Override
+    public Prefab getParentPrefab() {
+        return null;
+    }
+
+    @Override
+    public String toFullDescription() {
+        return toString();
+    }
+
+    @Override
+    public boolean hasComponent(Class<? extends Component> component) {
+        return components.containsKey(component);
+    }
+
+    @Override
+    public <T extends Component> T getComponent(Class<T> componentClass) {
+        return componentClass.cast(components.get(componentClass));
+    }
+
+    @Override
+    public Iterable<Component> iterateComponents() {
+        return components.values();
+    }
+
+    @Override
+    public <T extends Component> T addComponent(T component) {
+        components.put(component.getClass(), component);
+        return component;
+    }
+
+    @Override
+    public void removeComponent(Class<? extends Component> componentClass) {
+        components.remove(componentClass);
+    }
+
+    @Override
+    public void saveComponent(Component component) {
+        components.put(component.getClass(), component);
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryEntity{" + id + "}";
+    }
+}
@@ -3,23 +3,35 @@
 
 package org.terasology.module.inventory.systems;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.terasology.engine.entitySystem.entity.EntityManager;
 import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.prefab.Prefab;
 import org.terasology.engine.logic.inventory.ItemComponent;
+import org.terasology.gestalt.entitysystem.component.Component;
+import org.terasology.gestalt.entitysystem.event.Event;
 import org.terasology.module.inventory.components.InventoryComponent;
+import org.terasology.module.inventory.components.ItemDifferentiating;
+import org.terasology.module.inventory.events.BatchedInventoryRequest;
 import org.terasology.module.inventory.events.BeforeItemPutInInventory;
 import org.terasology.module.inventory.events.BeforeItemRemovedFromInventory;
 import org.terasology.module.inventory.events.GiveItemAction;
+import org.terasology.module.inventory.events.InventoryChangeAcknowledgedRequest;
 import org.terasology.module.inventory.events.InventorySlotChangedEvent;
 import org.terasology.module.inventory.events.InventorySlotStackSizeChangedEvent;
+import org.terasology.module.inventory.events.InventorySlotsChangedEvent;
+import org.terasology.module.inventory.events.MoveItemRequest;
 import org.terasology.module.inventory.events.RemoveItemAction;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -184,6 +196,7 @@ public class InventoryAuthoritySystemTest {
         assertEquals(1, itemComp2.stackCount);
         assertTrue(action.isConsumed());
         assertEquals(item1, action.getRemovedItem());
+        assertSlotIndexConsistent(inventoryComp);
 
         Mockito.verify(item1, atLeast(0)).getComponent(ItemComponent.class);
         Mockito.verify(item1, atLeast(0)).exists();
@@ -269,6 +282,94 @@ public class InventoryAuthoritySystemTest {
         Mockito.verifyNoMoreInteractions(instigator, inventory, entityManager, item);
     }
 
+    @Test
+    public void removeByPrefabAcrossStacksStartingWithLastSlot() {
+        Prefab prefab = Mockito.mock(Prefab.class);
+        EntityRef item1 = createItem("A", 4, 10);
+        EntityRef otherItem = createItem("B", 5, 10);
+        EntityRef item2 = createItem("A", 3, 10);
+        Mockito.when(item1.getParentPrefab()).thenReturn(prefab);
+        Mockito.when(item2.getParentPrefab()).thenReturn(prefab);
+        inventoryComp.itemSlots.set(0, item1);
+        inventoryComp.itemSlots.set(2, otherItem);
+        inventoryComp.itemSlots.set(3, item2);
+
+        assertEquals(7, inventoryAuthoritySystem.countByPrefab(inventory, prefab));
+        assertEquals(EntityRef.NULL, inventoryAuthoritySystem.removeByPrefab(inventory, instigator, prefab, 5, true));
+
+        assertEquals(item1, inventoryComp.itemSlots.get(0));
+        assertEquals(2, item1.getComponent(ItemComponent.class).stackCount);
+        assertEquals(otherItem, inventoryComp.itemSlots.get(2));
+        assertEquals(EntityRef.NULL, inventoryComp.itemSlots.get(3));
+        assertEquals(2, inventoryAuthoritySystem.countByPrefab(inventory, prefab));
+        assertEquals(EntityRef.NULL, inventoryAuthoritySystem.removeByPrefab(inventory, instigator, prefab, 2, true));
+        assertEquals(0, inventoryAuthoritySystem.countByPrefab(inventory, prefab));
+        assertSlotIndexConsistent(inventoryComp);
+
+        Mockito.verify(item2).destroy();
+        Mockito.verify(item1).destroy();
+        Mockito.verify(otherItem, Mockito.never()).destroy();
+        Mockito.verify(inventory, times(2)).saveComponent(inventoryComp);
+    }
+
+    @Test
+    public void removeNothingByPrefabIfThereAreTooFew() {
+        Prefab prefab = Mockito.mock(Prefab.class);
+        EntityRef item1 = createItem("A", 4, 10);
+        EntityRef item2 = createItem("A", 3, 10);
+        Mockito.when(item1.getParentPrefab()).thenReturn(prefab);
+        Mockito.when(item2.getParentPrefab()).thenReturn(prefab);
+        inventoryComp.itemSlots.set(0, item1);
+        inventoryComp.itemSlots.set(3, item2);
+
+        assertNull(inventoryAuthoritySystem.removeByPrefab(inventory, instigator, prefab, 8, true));
+
+        assertEquals(Arrays.asList(item1, EntityRef.NULL, EntityRef.NULL, item2, EntityRef.NULL), inventoryComp.itemSlots);
+        assertEquals(4, item1.getComponent(ItemComponent.class).stackCount);
+        assertEquals(3, item2.getComponent(ItemComponent.class).stackCount);
+        assertEquals(7, inventoryAuthoritySystem.countByPrefab(inventory, prefab));
+        Mockito.verify(item1, Mockito.never()).destroy();
+        Mockito.verify(item2, Mockito.never()).destroy();
+        Mockito.verify(inventory, Mockito.never()).saveComponent(inventoryComp);
+    }
+
+    @Test
+    public void removeByPrefabWithoutDestroying() {
+        Prefab prefab = Mockito.mock(Prefab.class);
+        EntityRef item1 = createItem("A", 4, 10);
+        EntityRef item2 = createItem("A", 3, 10);
+        Mockito.when(item1.getParentPrefab()).thenReturn(prefab);
+        Mockito.when(item2.getParentPrefab()).thenReturn(prefab);
+        inventoryComp.itemSlots.set(0, item1);
+        inventoryComp.itemSlots.set(3, item2);
+
+        EntityRef removed = inventoryAuthoritySystem.removeByPrefab(inventory, instigator, prefab, 5, false);
+
+        assertEquals(item2, removed);
+        assertEquals(5, item2.getComponent(ItemComponent.class).stackCount);
+        assertEquals(2, item1.getComponent(ItemComponent.class).stackCount);
+        assertEquals(Arrays.asList(item1, EntityRef.NULL, EntityRef.NULL, EntityRef.NULL, EntityRef.NULL),
+                inventoryComp.itemSlots);
+        assertEquals(2, inventoryAuthoritySystem.countByPrefab(inventory, prefab));
+        Mockito.verify(item2, Mockito.never()).destroy();
+    }
+
+    @Test
+    public void countByPrefabFollowsStackSizeChanges() {
+        Prefab prefab = Mockito.mock(Prefab.class);
+        EntityRef item = createItem("A", 4, 10);
+        Mockito.when(item.getParentPrefab()).thenReturn(prefab);
+        inventoryComp.itemSlots.set(0, item);
+        assertEquals(4, inventoryAuthoritySystem.countByPrefab(inventory, prefab));
+
+        InventoryTransaction transaction = inventoryAuthoritySystem.beginTransaction();
+        transaction.adjustStackSize(inventory, 0, 9);
+        assertEquals(9, inventoryAuthoritySystem.countByPrefab(inventory, prefab));
+
+        transaction.rollback();
+        assertEquals(4, inventoryAuthoritySystem.countByPrefab(inventory, prefab));
+    }
+
     @Test
     public void addItemToEmpty() {
         ItemComponent itemComp = new ItemComponent();
@@ -361,6 +462,70 @@ public class InventoryAuthoritySystemTest {
         assertEquals(10, partialItemComp.stackCount);
         assertEquals(1, itemComp.stackCount);
         assertTrue(action.isConsumed());
+        assertSlotIndexConsistent(inventoryComp);
+    }
+
+    @Test
+    public void giveItemsOfPrefabCreatingOneEntityPerFreeSlot() {
+        Prefab prefab = createItemPrefab("A", 10);
+        EntityRef partialItem = createItem("A", 7, 10);
+        inventoryComp.itemSlots.set(0, partialItem);
+        EntityRef newItem1 = createItem("A", 1, 10);
+        EntityRef newItem2 = createItem("A", 1, 10);
+        EntityRef newItem3 = createItem("A", 1, 10);
+        Mockito.when(entityManager.create(prefab)).thenReturn(newItem1, newItem2, newItem3);
+
+        assertEquals(0, inventoryAuthoritySystem.giveItems(inventory, instigator, prefab, 25, null));
+
+        assertEquals(10, partialItem.getComponent(ItemComponent.class).stackCount);
+        assertEquals(Arrays.asList(partialItem, newItem1, newItem2, newItem3, EntityRef.NULL), inventoryComp.itemSlots);
+        assertEquals(10, newItem1.getComponent(ItemComponent.class).stackCount);
+        assertEquals(10, newItem2.getComponent(ItemComponent.class).stackCount);
+        assertEquals(2, newItem3.getComponent(ItemComponent.class).stackCount);
+        Mockito.verify(entityManager, times(3)).create(prefab);
+        Mockito.verify(inventory).saveComponent(inventoryComp);
+        assertSlotIndexConsistent(inventoryComp);
+
+        assertEquals(15, inventoryAuthoritySystem.giveItems(inventory, instigator, prefab, 23, Arrays.asList(3)));
+        assertEquals(10, newItem3.getComponent(ItemComponent.class).stackCount);
+    }
+
+    @Test
+    public void giveItemsOfPrefabToStackWithOutdatedStackId() {
+        Prefab prefab = createItemPrefab("A", 10);
+        EntityRef item = createItem("B", 2, 10);
+        inventoryComp.itemSlots.set(0, item);
+        for (int slot = 1; slot < 5; slot++) {
+            inventoryComp.itemSlots.set(slot, createItem("C", 10, 10));
+        }
+        assertEquals(Arrays.asList(0), inventoryComp.findSlotsWithStack("B", null));
+        item.getComponent(ItemComponent.class).stackId = "A";
+
+        assertEquals(0, inventoryAuthoritySystem.giveItems(inventory, instigator, prefab, 3, null));
+
+        assertEquals(5, item.getComponent(ItemComponent.class).stackCount);
+        Mockito.verify(entityManager, Mockito.never()).create(prefab);
+    }
+
+    @Test
+    public void destroyItemsCreatedInRolledBackTransaction() {
+        Prefab prefab = createItemPrefab("A", 10);
+        EntityRef newItem1 = createItem("A", 1, 10);
+        EntityRef newItem2 = createItem("A", 1, 10);
+        Mockito.when(entityManager.create(prefab)).thenReturn(newItem1, newItem2);
+
+        InventoryTransaction transaction = inventoryAuthoritySystem.beginTransaction();
+        assertEquals(0, inventoryAuthoritySystem.giveItems(inventory, instigator, prefab, 15, null));
+        assertEquals(Arrays.asList(newItem1, newItem2, EntityRef.NULL, EntityRef.NULL, EntityRef.NULL),
+                inventoryComp.itemSlots);
+
+        transaction.rollback();
+
+        assertEquals(Collections.nCopies(5, EntityRef.NULL), inventoryComp.itemSlots);
+        Mockito.verify(newItem1).destroy();
+        Mockito.verify(newItem2).destroy();
+        Mockito.verify(inventory, Mockito.never()).saveComponent(inventoryComp);
+        assertSlotIndexConsistent(inventoryComp);
     }
 
     @Test
@@ -390,6 +555,233 @@ public class InventoryAuthoritySystemTest {
 
     }
 
+    @Test
+    public void recordMetricsForOperations() {
+        InventoryMetrics metrics = new InventoryMetricsSystem();
+        inventoryAuthoritySystem.setInventoryMetrics(metrics);
+        EntityRef item = createItem("A", 2, 10);
+
+        assertTrue(inventoryAuthoritySystem.giveItem(inventory, instigator, item));
+        Mockito.when(inventory.send(any(BeforeItemRemovedFromInventory.class))).then(
+                invocation -> {
+                    BeforeItemRemovedFromInventory event =
+                            (BeforeItemRemovedFromInventory) invocation.getArguments()[0];
+                    event.consume();
+                    return null;
+                });
+        assertNull(inventoryAuthoritySystem.removeItem(inventory, instigator, item, true));
+
+        OperationStats give = metrics.getStats(InventoryMetrics.Operation.GIVE);
+        assertEquals(1, give.getCount());
+        assertEquals(0, give.getFailures());
+        // the veto check, the slot change and the batched slot change
+        assertEquals(3, give.getEventsSent());
+        // the inventory and the given item
+        assertEquals(2, give.getComponentsSaved());
+
+        OperationStats remove = metrics.getStats(InventoryMetrics.Operation.REMOVE);
+        assertEquals(1, remove.getCount());
+        assertEquals(1, remove.getFailures());
+        assertEquals(1.0, remove.getVetoRate());
+        assertEquals(0, remove.getComponentsSaved());
+    }
+
+    @Test
+    public void saveInventoryOnceWhenCommittingTransaction() {
+        EntityRef item1 = createItem("A", 2, 10);
+        EntityRef item2 = createItem("B", 2, 10);
+        inventoryComp.sendSlotsChangedEvents = true;
+
+        InventoryTransaction transaction = inventoryAuthoritySystem.beginTransaction();
+        assertTrue(inventoryAuthoritySystem.giveItem(inventory, instigator, item1));
+        assertTrue(inventoryAuthoritySystem.giveItem(inventory, instigator, item2));
+
+        assertEquals(item1, inventoryComp.itemSlots.get(0));
+        assertEquals(item2, inventoryComp.itemSlots.get(1));
+        Mockito.verify(inventory, Mockito.never()).saveComponent(inventoryComp);
+        Mockito.verify(inventory, Mockito.never()).send(any(InventorySlotChangedEvent.class));
+
+        transaction.commit();
+
+        Mockito.verify(inventory).saveComponent(inventoryComp);
+        Mockito.verify(inventory, times(2)).send(any(InventorySlotChangedEvent.class));
+        Mockito.verify(inventory).send(any(InventorySlotsChangedEvent.class));
+
+        ArgumentCaptor<Event> sentEvents = ArgumentCaptor.forClass(Event.class);
+        Mockito.verify(inventory, atLeast(0)).send(sentEvents.capture());
+        InventorySlotsChangedEvent slotsChanged = sentEvents.getAllValues().stream()
+                .filter(InventorySlotsChangedEvent.class::isInstance)
+                .map(InventorySlotsChangedEvent.class::cast)
+                .findFirst().get();
+        assertEquals(2, slotsChanged.getChangedSlots().cardinality());
+        assertTrue(slotsChanged.isItemChanged(0));
+        assertEquals(EntityRef.NULL, slotsChanged.getOldItem(1));
+        assertEquals(item2, slotsChanged.getNewItem(1));
+    }
+
+    @Test
+    public void sendSlotsChangedEventOnlyIfAskedFor() {
+        EntityRef item = createItem("A", 2, 10);
+
+        InventoryTransaction transaction = inventoryAuthoritySystem.beginTransaction();
+        assertTrue(inventoryAuthoritySystem.giveItem(inventory, instigator, item));
+        transaction.commit();
+
+        Mockito.verify(inventory).send(any(InventorySlotChangedEvent.class));
+        Mockito.verify(inventory, Mockito.never()).send(any(InventorySlotsChangedEvent.class));
+    }
+
+    @Test
+    public void restoreSlotsAndStackSizesWhenRollingBackTransaction() {
+        EntityRef partialItem = createItem("A", 9, 10);
+        inventoryComp.itemSlots.set(0, partialItem);
+        EntityRef item = createItem("A", 2, 10);
+
+        InventoryTransaction transaction = inventoryAuthoritySystem.beginTransaction();
+        assertTrue(inventoryAuthoritySystem.giveItem(inventory, instigator, item));
+        assertEquals(10, partialItem.getComponent(ItemComponent.class).stackCount);
+        assertEquals(item, inventoryComp.itemSlots.get(1));
+
+        transaction.rollback();
+
+        assertEquals(9, partialItem.getComponent(ItemComponent.class).stackCount);
+        assertEquals(2, item.getComponent(ItemComponent.class).stackCount);
+        assertEquals(EntityRef.NULL, inventoryComp.itemSlots.get(1));
+        assertSlotIndexConsistent(inventoryComp);
+        Mockito.verify(inventory, Mockito.never()).saveComponent(inventoryComp);
+        Mockito.verify(partialItem, Mockito.never()).saveComponent(any());
+        Mockito.verify(item, Mockito.never()).saveComponent(any());
+        Mockito.verify(inventory, Mockito.never()).send(any(InventorySlotChangedEvent.class));
+    }
+
+    @Test
+    public void nestedTransactionRollsBackOnlyItsOwnChanges() {
+        EntityRef item1 = createItem("A", 2, 10);
+        EntityRef item2 = createItem("B", 2, 10);
+        EntityRef item3 = createItem("C", 2, 10);
+
+        InventoryTransaction transaction = inventoryAuthoritySystem.beginTransaction();
+        assertTrue(inventoryAuthoritySystem.giveItem(inventory, instigator, item1));
+
+        InventoryTransaction rolledBack = inventoryAuthoritySystem.beginTransaction();
+        assertTrue(inventoryAuthoritySystem.giveItem(inventory, instigator, item2));
+        rolledBack.rollback();
+        assertEquals(EntityRef.NULL, inventoryComp.itemSlots.get(1));
+
+        InventoryTransaction committed = inventoryAuthoritySystem.beginTransaction();
+        assertTrue(inventoryAuthoritySystem.giveItem(inventory, instigator, item3));
+        committed.commit();
+        Mockito.verify(inventory, Mockito.never()).saveComponent(inventoryComp);
+
+        transaction.commit();
+
+        assertEquals(Arrays.asList(item1, item3, EntityRef.NULL, EntityRef.NULL, EntityRef.NULL), inventoryComp.itemSlots);
+        Mockito.verify(inventory).saveComponent(inventoryComp);
+        Mockito.verify(inventory, times(2)).send(any(InventorySlotChangedEvent.class));
+        assertSlotIndexConsistent(inventoryComp);
+    }
+
+    @Test
+    public void applyBatchedRequestInOneTransactionAndAcknowledgeOnce() {
+        EntityRef item = createItem("A", 2, 10);
+        inventoryComp.itemSlots.set(0, item);
+        EntityRef client = Mockito.mock(EntityRef.class);
+
+        inventoryAuthoritySystem.batchedInventoryRequest(new BatchedInventoryRequest(Arrays.asList(
+                new MoveItemRequest(instigator, inventory, 0, inventory, 1, 4, Collections.emptyList()),
+                new MoveItemRequest(instigator, inventory, 1, inventory, 2, 5, Collections.emptyList()))), client);
+
+        assertEquals(EntityRef.NULL, inventoryComp.itemSlots.get(0));
+        assertEquals(EntityRef.NULL, inventoryComp.itemSlots.get(1));
+        assertEquals(item, inventoryComp.itemSlots.get(2));
+        assertSlotIndexConsistent(inventoryComp);
+        Mockito.verify(inventory).saveComponent(inventoryComp);
+
+        ArgumentCaptor<InventoryChangeAcknowledgedRequest> ack =
+                ArgumentCaptor.forClass(InventoryChangeAcknowledgedRequest.class);
+        Mockito.verify(client).send(ack.capture());
+        assertEquals(4, ack.getValue().getFirstChangeId());
+        assertEquals(5, ack.getValue().getChangeId());
+    }
+
+    @Test
+    public void stackItemsWithEqualDifferentiatingComponents() {
+        EntityRef item1 = createItem("A", 1, 10);
+        EntityRef item2 = createItem("A", 1, 10);
+        addDifferentiatingComponent(item1, "red");
+        addDifferentiatingComponent(item2, "red");
+
+        assertTrue(inventoryAuthoritySystem.canStackTogether(item1, item2));
+    }
+
+    @Test
+    public void doNotStackItemsWithDifferentDifferentiatingComponents() {
+        EntityRef item1 = createItem("A", 1, 10);
+        EntityRef item2 = createItem("A", 1, 10);
+        addDifferentiatingComponent(item1, "red");
+        addDifferentiatingComponent(item2, "blue");
+
+        assertFalse(inventoryAuthoritySystem.canStackTogether(item1, item2));
+    }
+
+    @Test
+    public void doNotStackItemsWithDifferentiatingComponentOnOneSide() {
+        EntityRef item1 = createItem("A", 1, 10);
+        EntityRef item2 = createItem("A", 1, 10);
+        addDifferentiatingComponent(item2, "red");
+
+        assertFalse(inventoryAuthoritySystem.canStackTogether(item1, item2));
+        assertFalse(inventoryAuthoritySystem.canStackTogether(item2, item1));
+    }
+
+    @Test
+    public void compareOnlyRegisteredDifferentiatingComponents() {
+        InventoryUtils.setDifferentiatingComponents(Collections.singletonList(ColorComponent.class));
+        EntityRef item1 = createItem("A", 1, 10);
+        EntityRef item2 = createItem("A", 1, 10);
+        EntityRef item3 = createItem("A", 1, 10);
+        addDifferentiatingComponent(item1, "red");
+        addDifferentiatingComponent(item2, "red");
+        addDifferentiatingComponent(item3, "blue");
+
+        assertTrue(inventoryAuthoritySystem.canStackTogether(item1, item2));
+        assertFalse(inventoryAuthoritySystem.canStackTogether(item1, item3));
+        Mockito.verify(item1, Mockito.never()).iterateComponents();
+    }
+
+    @Test
+    public void matchPrefabWithItemsWithoutCreatingOne() {
+        ItemComponent prefabItem = new ItemComponent();
+        prefabItem.stackId = "A";
+        ColorComponent prefabColor = new ColorComponent("red");
+        Prefab prefab = Mockito.mock(Prefab.class);
+        Mockito.when(prefab.getComponent(ItemComponent.class)).thenReturn(prefabItem);
+        Mockito.when(prefab.getComponent(ColorComponent.class)).thenReturn(prefabColor);
+        Mockito.when(prefab.iterateComponents()).thenReturn(Arrays.<Component>asList(prefabItem, prefabColor));
+        EntityRef redItem = createItem("A", 1, 10);
+        EntityRef blueItem = createItem("A", 1, 10);
+        EntityRef otherItem = createItem("B", 1, 10);
+        addDifferentiatingComponent(redItem, "red");
+        addDifferentiatingComponent(blueItem, "blue");
+        addDifferentiatingComponent(otherItem, "red");
+
+        assertTrue(InventoryUtils.isSameItem(prefab, redItem));
+        assertFalse(InventoryUtils.isSameItem(prefab, blueItem));
+        assertFalse(InventoryUtils.isSameItem(prefab, otherItem));
+    }
+
+    @AfterEach
+    public void resetDifferentiatingComponents() {
+        InventoryUtils.setDifferentiatingComponents(null);
+    }
+
+    private void addDifferentiatingComponent(EntityRef item, String color) {
+        ColorComponent colorComponent = new ColorComponent(color);
+        ItemComponent itemComponent = item.getComponent(ItemComponent.class);
+        Mockito.when(item.getComponent(ColorComponent.class)).thenReturn(colorComponent);
+        Mockito.when(item.iterateComponents()).thenReturn(Arrays.<Component>asList(itemComponent, colorComponent));
+    }
+
     private void setupItemRef(EntityRef item, ItemComponent itemComp, int stackCount, int stackSize) {
         itemComp.stackCount = (byte) stackCount;
         itemComp.maxStackSize = (byte) stackSize;
@@ -399,6 +791,18 @@ public class InventoryAuthoritySystemTest {
         Mockito.when(item.iterateComponents()).thenReturn(new LinkedList<>());
     }
 
+    /**
+     * Check that looking up the slot of every item in the inventory yields the slot it is actually in.
+     */
+    private void assertSlotIndexConsistent(InventoryComponent inventoryComponent) {
+        for (int slot = 0; slot < inventoryComponent.itemSlots.size(); slot++) {
+            EntityRef item = inventoryComponent.itemSlots.get(slot);
+            if (item != EntityRef.NULL) {
+                assertEquals(slot, inventoryComponent.findSlot(item));
+            }
+        }
+    }
+
     private EntityRef createItem(String stackId, int stackCount, int stackSize) {
         ItemComponent itemComp = new ItemComponent();
         itemComp.stackCount = (byte) stackCount;
@@ -411,6 +815,16 @@ public class InventoryAuthoritySystemTest {
         return item;
     }
 
+    private Prefab createItemPrefab(String stackId, int stackSize) {
+        ItemComponent prefabItem = new ItemComponent();
+        prefabItem.stackId = stackId;
+        prefabItem.maxStackSize = (byte) stackSize;
+        Prefab prefab = Mockito.mock(Prefab.class);
+        Mockito.when(prefab.getComponent(ItemComponent.class)).thenReturn(prefabItem);
+        Mockito.when(prefab.iterateComponents()).thenReturn(Collections.<Component>singletonList(prefabItem));
+        return prefab;
+    }
+
     @Test
     public void testMoveItemToSlotsWithSplittingToMultipleStacks() {
         int stackSize = 10;
@@ -469,6 +883,8 @@ public class InventoryAuthoritySystemTest {
         assertEquals(3, itemA3.getComponent(ItemComponent.class).stackCount);
         assertEquals(itemA3, toInventoryComp.itemSlots.get(1));
         assertFalse(fromInventoryComp.itemSlots.get(fromSlot).exists());
+        assertSlotIndexConsistent(toInventoryComp);
+        assertSlotIndexConsistent(fromInventoryComp);
     }
 
     @Test
@@ -547,6 +963,8 @@ public class InventoryAuthoritySystemTest {
         assertEquals(EntityRef.NULL, toInventoryComp.itemSlots.get(1));
         assertEquals(itemA2, toInventoryComp.itemSlots.get(2));
         assertFalse(fromInventoryComp.itemSlots.get(fromSlot).exists());
+        assertSlotIndexConsistent(toInventoryComp);
+        assertSlotIndexConsistent(fromInventoryComp);
     }
 
     /**
@@ -624,4 +1042,27 @@ public class InventoryAuthoritySystemTest {
         assertEquals(4, itemA3.getComponent(ItemComponent.class).stackCount);
         assertEquals(itemA3, fromInventoryComp.itemSlots.get(fromSlot));
     }
+
+    private static final class ColorComponent implements Component<ColorComponent>, ItemDifferentiating {
+        private String color;
+
+        ColorComponent(String color) {
+            this.color = color;
+        }
+
+        @Override
+        public void copyFrom(ColorComponent other) {
+            this.color = other.color;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ColorComponent && Objects.equals(color, ((ColorComponent) o).color);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(color);
+        }
+    }
 }
@@ -0,0 +1,110 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.systems;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.terasology.engine.entitySystem.entity.EntityManager;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.logic.inventory.ItemComponent;
+import org.terasology.engine.network.ClientComponent;
+import org.terasology.engine.network.NetworkMode;
+import org.terasology.engine.network.NetworkSystem;
+import org.terasology.module.inventory.components.InventoryComponent;
+import org.terasology.module.inventory.events.InventorySlotsDeltaEvent;
+import org.terasology.module.inventory.events.OwnerInventorySlotsDeltaEvent;
+import org.terasology.reflection.metadata.FieldMetadata;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+
+public class InventoryReplicationSystemTest {
+    private InventoryReplicationSystem inventoryReplicationSystem;
+    private EntityRef entity;
+    private InventoryComponent inventory;
+    private FieldMetadata<?, ?> itemSlotsField;
+
+    @BeforeEach
+    public void setup() {
+        NetworkSystem networkSystem = Mockito.mock(NetworkSystem.class);
+        Mockito.when(networkSystem.getMode()).thenReturn(NetworkMode.DEDICATED_SERVER);
+        inventoryReplicationSystem = new InventoryReplicationSystem();
+        inventoryReplicationSystem.setNetworkSystem(networkSystem);
+        EntityManager entityManager = Mockito.mock(EntityManager.class);
+        Mockito.when(entityManager.getEntitiesWith(ClientComponent.class)).thenReturn(Collections.emptyList());
+        inventoryReplicationSystem.setEntityManager(entityManager);
+
+        entity = Mockito.mock(EntityRef.class);
+        inventory = new InventoryComponent(5);
+        Mockito.when(entity.getComponent(InventoryComponent.class)).thenReturn(inventory);
+        itemSlotsField = Mockito.mock(FieldMetadata.class);
+        Mockito.when(itemSlotsField.getName()).thenReturn("itemSlots");
+    }
+
+    @Test
+    public void replicateSlotsOfInventoryReplicatedToViewersToOwner() {
+        inventory.replicateToViewers = true;
+
+        inventory.itemSlots.set(0, Mockito.mock(EntityRef.class));
+        inventoryReplicationSystem.onInventoryChanged(null, entity, inventory);
+
+        ArgumentCaptor<OwnerInventorySlotsDeltaEvent> delta = ArgumentCaptor.forClass(OwnerInventorySlotsDeltaEvent.class);
+        Mockito.verify(entity).send(delta.capture());
+        assertEquals(Collections.singletonList(0), delta.getValue().getSlots());
+        Mockito.verify(entity, Mockito.never()).send(any(InventorySlotsDeltaEvent.class));
+        assertFalse(inventory.shouldReplicate(itemSlotsField, false, true));
+        assertFalse(inventory.shouldReplicate(itemSlotsField, false, false));
+
+        for (int i = 0; i < InventoryReplicationSystem.DELTAS_PER_SNAPSHOT; i++) {
+            inventory.itemSlots.set(1, Mockito.mock(EntityRef.class));
+            inventoryReplicationSystem.onInventoryChanged(null, entity, inventory);
+        }
+
+        Mockito.verify(entity, times(InventoryReplicationSystem.DELTAS_PER_SNAPSHOT)).send(any(OwnerInventorySlotsDeltaEvent.class));
+        assertTrue(inventory.shouldReplicate(itemSlotsField, false, true));
+        assertFalse(inventory.shouldReplicate(itemSlotsField, false, false));
+    }
+
+    @Test
+    public void sendDeltasWhileSnapshotIsPending() {
+        inventory.itemSlots.add(EntityRef.NULL);
+        inventoryReplicationSystem.onInventoryChanged(null, entity, inventory);
+        assertTrue(inventory.shouldReplicate(itemSlotsField, false, true));
+
+        inventoryReplicationSystem.update(0);
+        inventory.itemSlots.set(0, Mockito.mock(EntityRef.class));
+        inventoryReplicationSystem.onInventoryChanged(null, entity, inventory);
+
+        ArgumentCaptor<OwnerInventorySlotsDeltaEvent> delta = ArgumentCaptor.forClass(OwnerInventorySlotsDeltaEvent.class);
+        Mockito.verify(entity).send(delta.capture());
+        assertEquals(Collections.singletonList(0), delta.getValue().getSlots());
+        assertTrue(inventory.shouldReplicate(itemSlotsField, false, true));
+
+        inventoryReplicationSystem.update(0);
+        assertFalse(inventory.shouldReplicate(itemSlotsField, false, true));
+    }
+
+    @Test
+    public void saveChangedSummaryOnce() {
+        inventory.replicateToViewers = true;
+        EntityRef item = Mockito.mock(EntityRef.class);
+        Mockito.when(item.getComponent(ItemComponent.class)).thenReturn(new ItemComponent());
+
+        inventory.itemSlots.set(2, item);
+        inventoryReplicationSystem.onInventoryChanged(null, entity, inventory);
+        assertEquals(5, inventory.slotCount);
+        assertEquals(1, inventory.filledSlots);
+        Mockito.verify(entity).saveComponent(inventory);
+
+        inventoryReplicationSystem.onInventoryChanged(null, entity, inventory);
+        Mockito.verify(entity).saveComponent(inventory);
+    }
+}
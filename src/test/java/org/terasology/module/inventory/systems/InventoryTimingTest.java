@@ -0,0 +1,259 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.systems;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.engine.entitySystem.entity.EntityManager;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.logic.inventory.ItemComponent;
+import org.terasology.gestalt.entitysystem.component.Component;
+import org.terasology.module.inventory.components.InventoryComponent;
+import org.terasology.module.inventory.components.ItemDifferentiating;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * Times the hot paths of {@link InventoryAuthoritySystem} and {@link InventoryUtils} on {@link InMemoryEntity}s, and
+ * logs the average time per operation, so that changes to them can be compared against earlier numbers.
+ * <p>
+ * Each operation is run on a fresh inventory {@link #WARMUP} times before it is timed {@link #ITERATIONS} times. The
+ * times are only logged, not asserted, as they depend on the machine; the results of the operations are asserted.
+ */
+public class InventoryTimingTest {
+    private static final Logger logger = LoggerFactory.getLogger(InventoryTimingTest.class);
+
+    private static final int WARMUP = 500;
+    private static final int ITERATIONS = 2000;
+    private static final int MAX_STACK_SIZE = 64;
+    private static final List<Integer> SLOT_COUNTS = Arrays.asList(10, 40, 400);
+
+    private InventoryAuthoritySystem inventoryAuthoritySystem;
+
+    @BeforeEach
+    public void setup() {
+        inventoryAuthoritySystem = new InventoryAuthoritySystem();
+        EntityManager entityManager = Mockito.mock(EntityManager.class);
+        Mockito.when(entityManager.copy(any(EntityRef.class))).then(invocation -> invocation.<EntityRef>getArgument(0).copy());
+        inventoryAuthoritySystem.setEntityManager(entityManager);
+    }
+
+    @AfterEach
+    public void resetDifferentiatingComponents() {
+        InventoryUtils.setDifferentiatingComponents(null);
+    }
+
+    @Test
+    public void giveItemToEmptyInventory() {
+        for (int slots : SLOT_COUNTS) {
+            boolean given = measure("giveItem to empty inventory of " + slots + " slots",
+                    () -> inventory(slots),
+                    inventory -> inventoryAuthoritySystem.giveItem(inventory, EntityRef.NULL, item("stone", 1)));
+            assertTrue(given);
+        }
+    }
+
+    @Test
+    public void giveItemToFullInventory() {
+        for (int slots : SLOT_COUNTS) {
+            EntityRef inventory = inventory(slots);
+            fill(inventory, "stone", MAX_STACK_SIZE);
+            boolean given = measure("giveItem to full inventory of " + slots + " slots",
+                    () -> inventory,
+                    full -> inventoryAuthoritySystem.giveItem(full, EntityRef.NULL, item("stone", 1)));
+            assertFalse(given);
+        }
+    }
+
+    @Test
+    public void removeItemOverAllStacks() {
+        for (int slots : SLOT_COUNTS) {
+            EntityRef inventory = measure("removeItem over " + slots + " stacks",
+                    () -> {
+                        EntityRef stacked = inventory(slots);
+                        fill(stacked, "stone", 1);
+                        return stacked;
+                    },
+                    stacked -> {
+                        List<EntityRef> items = new ArrayList<>(stacked.getComponent(InventoryComponent.class).itemSlots);
+                        inventoryAuthoritySystem.removeItem(stacked, EntityRef.NULL, items, true);
+                        return stacked;
+                    });
+            assertEquals(slots, inventory.getComponent(InventoryComponent.class).findEmptySlots(null).size());
+        }
+    }
+
+    /**
+     * The target inventory holds a partial stack of the moved item in every other slot, so the move has to look at
+     * every target slot before it ends up in the last one.
+     */
+    @Test
+    public void moveItemToSlots() {
+        for (int slots : SLOT_COUNTS) {
+            List<Integer> toSlots = new ArrayList<>();
+            for (int slot = 0; slot < slots; slot++) {
+                toSlots.add(slot);
+            }
+            EntityRef[] inventories = measure("moveItemToSlots with " + slots + " target slots",
+                    () -> {
+                        EntityRef from = inventory(1);
+                        from.getComponent(InventoryComponent.class).itemSlots.set(0, item("stone", MAX_STACK_SIZE));
+                        EntityRef to = inventory(slots);
+                        InventoryComponent toComponent = to.getComponent(InventoryComponent.class);
+                        for (int slot = 0; slot < slots - 1; slot++) {
+                            toComponent.itemSlots.set(slot, slot % 2 == 0
+                                    ? item("stone", MAX_STACK_SIZE - 1)
+                                    : item("dirt", MAX_STACK_SIZE));
+                        }
+                        return new EntityRef[] {from, to};
+                    },
+                    fromAndTo -> {
+                        assertTrue(inventoryAuthoritySystem.moveItemToSlots(EntityRef.NULL, fromAndTo[0], 0, fromAndTo[1],
+                                toSlots));
+                        return fromAndTo;
+                    });
+            assertFalse(InventoryUtils.getItemAt(inventories[0], 0).exists());
+            assertTrue(InventoryUtils.getItemAt(inventories[1], slots - 1).exists());
+        }
+    }
+
+    @Test
+    public void isSameItemWithDifferentiatingComponents() {
+        InventoryUtils.setDifferentiatingComponents(Arrays.<Class<? extends Component>>asList(
+                Variant1.class, Variant2.class, Variant3.class, Variant4.class, Variant5.class));
+        for (int components = 0; components <= 5; components++) {
+            EntityRef item = item("stone", 1, variants(components, 1));
+            EntityRef sameItem = item("stone", 1, variants(components, 1));
+            EntityRef differentItem = item("stone", 1, variants(components, 2));
+
+            assertTrue(measure("isSameItem with " + components + " differentiating components",
+                    () -> sameItem, other -> InventoryUtils.isSameItem(item, other)));
+            assertEquals(components == 0, measure("isSameItem with " + components + " differing components",
+                    () -> differentItem, other -> InventoryUtils.isSameItem(item, other)));
+        }
+    }
+
+    @Test
+    public void switchItemAcrossInventories() {
+        for (int slots : SLOT_COUNTS) {
+            EntityRef from = inventory(slots);
+            fill(from, "stone", MAX_STACK_SIZE);
+            EntityRef to = inventory(slots);
+            fill(to, "dirt", 1);
+            boolean switched = measure("switchItem across inventories of " + slots + " slots",
+                    () -> to,
+                    other -> inventoryAuthoritySystem.switchItem(from, EntityRef.NULL, slots - 1, other, 0));
+            assertTrue(switched);
+        }
+    }
+
+    /**
+     * Time an operation on a state created anew for every run, and log the average time it took.
+     *
+     * @return the result of the last run
+     */
+    private static <S, R> R measure(String operation, Supplier<S> setup, Function<S, R> run) {
+        R result = null;
+        long total = 0;
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            S state = setup.get();
+            long start = System.nanoTime();
+            result = run.apply(state);
+            long time = System.nanoTime() - start;
+            if (i >= WARMUP) {
+                total += time;
+            }
+        }
+        logger.info("{}: {} ns/op", operation, total / ITERATIONS);
+        return result;
+    }
+
+    private static EntityRef inventory(int slots) {
+        return new InMemoryEntity(new InventoryComponent(slots));
+    }
+
+    private static EntityRef item(String stackId, int stackCount, Component... differentiatingComponents) {
+        ItemComponent item = new ItemComponent();
+        item.stackId = stackId;
+        item.stackCount = (byte) stackCount;
+        item.maxStackSize = (byte) MAX_STACK_SIZE;
+        EntityRef entity = new InMemoryEntity(item);
+        for (Component component : differentiatingComponents) {
+            entity.addComponent(component);
+        }
+        return entity;
+    }
+
+    private static void fill(EntityRef inventory, String stackId, int stackCount) {
+        InventoryComponent inventoryComponent = inventory.getComponent(InventoryComponent.class);
+        for (int slot = 0; slot < inventoryComponent.itemSlots.size(); slot++) {
+            inventoryComponent.itemSlots.set(slot, item(stackId, stackCount));
+        }
+    }
+
+    /**
+     * @return the first {@code count} of the {@link Variant} components, all set to the given value
+     */
+    private static Component[] variants(int count, int value) {
+        Variant<?>[] variants = {new Variant1(), new Variant2(), new Variant3(), new Variant4(), new Variant5()};
+        Component[] result = new Component[count];
+        for (int i = 0; i < count; i++) {
+            variants[i].value = value;
+            result[i] = variants[i];
+        }
+        return result;
+    }
+
+    /**
+     * A differentiating component whose instances are told apart by a number. There is one subclass per component an
+     * item can have, so that items can carry several of them.
+     */
+    abstract static class Variant<T extends Variant<T>> implements Component<T>, ItemDifferentiating {
+        public int value;
+
+        @Override
+        public void copyFrom(T other) {
+            this.value = other.value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o != null && o.getClass() == getClass() && ((Variant<?>) o).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(getClass(), value);
+        }
+    }
+
+    public static final class Variant1 extends Variant<Variant1> {
+    }
+
+    public static final class Variant2 extends Variant<Variant2> {
+    }
+
+    public static final class Variant3 extends Variant<Variant3> {
+    }
+
+    public static final class Variant4 extends Variant<Variant4> {
+    }
+
+    public static final class Variant5 extends Variant<Variant5> {
+    }
+}
@@ -0,0 +1,130 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.module.inventory.systems;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.terasology.engine.entitySystem.prefab.Prefab;
+import org.terasology.engine.entitySystem.prefab.PrefabManager;
+import org.terasology.engine.logic.inventory.ItemComponent;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockManager;
+import org.terasology.engine.world.block.BlockUri;
+import org.terasology.engine.world.block.family.BlockFamily;
+import org.terasology.gestalt.assets.management.AssetManager;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+
+public class ItemUriResolverTest {
+    private PrefabManager prefabManager;
+    private BlockManager blockManager;
+    private ItemUriResolver itemUriResolver;
+
+    @BeforeEach
+    public void setup() {
+        prefabManager = Mockito.mock(PrefabManager.class);
+        blockManager = Mockito.mock(BlockManager.class);
+        itemUriResolver = new ItemUriResolver(Mockito.mock(AssetManager.class), prefabManager, blockManager);
+    }
+
+    @Test
+    public void resolveItemPrefabOnce() {
+        Prefab prefab = createItemPrefab("test:stone");
+
+        assertEquals(Optional.of(prefab), itemUriResolver.resolveItemPrefab("test:stone"));
+        assertEquals(Optional.of(prefab), itemUriResolver.resolveItemPrefab("test:stone"));
+
+        Mockito.verify(prefabManager).getPrefab("test:stone");
+    }
+
+    @Test
+    public void resolveUnknownUriOnce() {
+        assertEquals(Optional.empty(), itemUriResolver.resolveItemPrefab("test:unknown"));
+        assertEquals(Optional.empty(), itemUriResolver.resolveItemPrefab("test:unknown"));
+
+        Mockito.verify(prefabManager).getPrefab("test:unknown");
+    }
+
+    @Test
+    public void forgetLeastRecentlyUsedUri() {
+        createItemPrefab("test:stone");
+        itemUriResolver.resolveItemPrefab("test:stone");
+        for (int i = 1; i < ItemUriResolver.MAX_ENTRIES; i++) {
+            itemUriResolver.resolveItemPrefab("test:other" + i);
+        }
+        itemUriResolver.resolveItemPrefab("test:stone");
+        Mockito.verify(prefabManager).getPrefab("test:stone");
+
+        // the recently used stone survives, the least recently used other is evicted
+        itemUriResolver.resolveItemPrefab("test:more");
+        itemUriResolver.resolveItemPrefab("test:stone");
+        itemUriResolver.resolveItemPrefab("test:other1");
+
+        Mockito.verify(prefabManager).getPrefab("test:stone");
+        Mockito.verify(prefabManager, times(2)).getPrefab("test:other1");
+        Mockito.verify(prefabManager, times(ItemUriResolver.MAX_ENTRIES + 2)).getPrefab(anyString());
+    }
+
+    @Test
+    public void resolveDisposedPrefabAgain() {
+        Prefab prefab = createItemPrefab("test:stone");
+        itemUriResolver.resolveItemPrefab("test:stone");
+        when(prefab.isDisposed()).thenReturn(true);
+        Prefab reloadedPrefab = createItemPrefab("test:stone");
+
+        assertEquals(Optional.of(reloadedPrefab), itemUriResolver.resolveItemPrefab("test:stone"));
+        assertEquals(Optional.of(reloadedPrefab), itemUriResolver.resolveItemPrefab("test:stone"));
+
+        Mockito.verify(prefabManager, times(2)).getPrefab("test:stone");
+    }
+
+    @Test
+    public void resolveBlockFamilyOnce() {
+        BlockFamily family = createBlockFamily("test:stone");
+
+        assertEquals(Optional.of(family), itemUriResolver.resolveBlockFamily("test:stone"));
+        assertEquals(Optional.of(family), itemUriResolver.resolveBlockFamily("test:stone"));
+
+        Mockito.verify(blockManager).getBlockFamily("test:stone");
+    }
+
+    @Test
+    public void resolveBlockFamilyAgainOnceItsArchetypeIsReplaced() {
+        createBlockFamily("test:stone");
+        itemUriResolver.resolveBlockFamily("test:stone");
+        BlockFamily reloadedFamily = createBlockFamily("test:stone");
+
+        assertEquals(Optional.of(reloadedFamily), itemUriResolver.resolveBlockFamily("test:stone"));
+        assertEquals(Optional.of(reloadedFamily), itemUriResolver.resolveBlockFamily("test:stone"));
+
+        Mockito.verify(blockManager, times(2)).getBlockFamily("test:stone");
+    }
+
+    private Prefab createItemPrefab(String uri) {
+        Prefab prefab = Mockito.mock(Prefab.class);
+        when(prefab.hasComponent(ItemComponent.class)).thenReturn(true);
+        when(prefabManager.getPrefab(uri)).thenReturn(prefab);
+        return prefab;
+    }
+
+    /**
+     * Create a block family and register its archetype block, replacing any block registered for the URI before.
+     */
+    private BlockFamily createBlockFamily(String uri) {
+        BlockUri blockUri = new BlockUri(uri);
+        Block archetype = Mockito.mock(Block.class);
+        when(archetype.getURI()).thenReturn(blockUri);
+        BlockFamily family = Mockito.mock(BlockFamily.class);
+        when(family.getArchetypeBlock()).thenReturn(archetype);
+        when(blockManager.getBlockFamily(uri)).thenReturn(family);
+        when(blockManager.getBlock(blockUri)).thenReturn(archetype);
+        return family;
+    }
+}
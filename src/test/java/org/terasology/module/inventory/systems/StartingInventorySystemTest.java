@@ -3,12 +3,111 @@
 
 package org.terasology.module.inventory.systems;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.terasology.engine.entitySystem.entity.EntityManager;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.prefab.Prefab;
+import org.terasology.engine.logic.inventory.ItemComponent;
+import org.terasology.engine.logic.players.event.OnPlayerSpawnedEvent;
+import org.terasology.gestalt.entitysystem.component.Component;
+import org.terasology.module.inventory.components.InventoryComponent;
+import org.terasology.module.inventory.components.InventoryItem;
+import org.terasology.module.inventory.components.StartingInventoryComponent;
+import org.terasology.module.inventory.events.RequestInventoryEvent;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
 
 public class StartingInventorySystemTest {
+    private static final int SLOT_COUNT = 10;
+
+    private StartingInventorySystem startingInventorySystem;
+    private EntityManager entityManager;
+    private ItemUriResolver itemUriResolver;
+
+    @BeforeEach
+    public void setup() {
+        entityManager = Mockito.mock(EntityManager.class);
+        InventoryAuthoritySystem inventoryAuthoritySystem = new InventoryAuthoritySystem();
+        inventoryAuthoritySystem.setEntityManager(entityManager);
+        itemUriResolver = Mockito.mock(ItemUriResolver.class);
+        when(itemUriResolver.resolveItemPrefab(anyString())).thenReturn(Optional.empty());
+        when(itemUriResolver.resolveBlockFamily(anyString())).thenReturn(Optional.empty());
+
+        startingInventorySystem = new StartingInventorySystem();
+        startingInventorySystem.inventoryManager = inventoryAuthoritySystem;
+        startingInventorySystem.entityManager = entityManager;
+        startingInventorySystem.itemUriResolver = itemUriResolver;
+
+        createItemPrefab("test:stone", "stone", 10);
+    }
+
+    @Test
+    public void keepStartingInventoryOfPlayerWhoseBuildFails() {
+        EntityRef player = createPlayer(startingItem("test:stone", 5));
+        RuntimeException failure = new IllegalStateException("vetoed");
+        when(player.send(any(RequestInventoryEvent.class))).then(invocation -> {
+            startingInventorySystem.onRequestInventory(invocation.getArgument(0), player);
+            throw failure;
+        });
+
+        spawn(player);
+        startingInventorySystem.update(0);
+
+        Mockito.verify(player, Mockito.never()).removeComponent(StartingInventoryComponent.class);
+        assertEquals(Collections.nCopies(SLOT_COUNT, EntityRef.NULL), player.getComponent(InventoryComponent.class).itemSlots);
+    }
+
+    @Test
+    public void buildAtLeastOnePlayerPerUpdate() {
+        EntityRef player1 = createPlayer(startingItem("test:stone", 5));
+        EntityRef player2 = createPlayer(startingItem("test:stone", 5));
+        spawn(player1);
+        spawn(player2);
+
+        startingInventorySystem.update(0);
+        Mockito.verify(player1).removeComponent(StartingInventoryComponent.class);
+
+        startingInventorySystem.update(0);
+        Mockito.verify(player2).removeComponent(StartingInventoryComponent.class);
+        assertEquals(5, InventoryUtils.getStackCount(InventoryUtils.getItemAt(player2, 0)));
+
+        startingInventorySystem.update(0);
+        Mockito.verify(player1).send(any(RequestInventoryEvent.class));
+        Mockito.verify(player2).send(any(RequestInventoryEvent.class));
+        assertEquals(5, InventoryUtils.getStackCount(InventoryUtils.getItemAt(player1, 0)));
+    }
+
+    @Test
+    public void skipPlayerDestroyedWhileQueued() {
+        EntityRef destroyedPlayer = createPlayer(startingItem("test:stone", 5));
+        EntityRef player = createPlayer(startingItem("test:stone", 5));
+        spawn(destroyedPlayer);
+        spawn(player);
+        when(destroyedPlayer.getComponent(StartingInventoryComponent.class)).thenReturn(null);
+        when(destroyedPlayer.exists()).thenReturn(false);
+
+        startingInventorySystem.update(0);
+        startingInventorySystem.update(0);
+
+        Mockito.verify(destroyedPlayer, Mockito.never()).send(any(RequestInventoryEvent.class));
+        Mockito.verify(destroyedPlayer, Mockito.never()).removeComponent(StartingInventoryComponent.class);
+        Mockito.verify(player).removeComponent(StartingInventoryComponent.class);
+    }
 
     @Test
     @Disabled
@@ -35,9 +134,29 @@ public class StartingInventorySystemTest {
     }
 
     @Test
-    @Disabled
     public void giveStackableItemExceedingStackSize() {
-        assertTrue(false, "Player inventory should contain multiple slots filled with the stackable item.");
+        EntityRef player = createPlayer(startingItem("test:stone", 25));
+        spawn(player);
+        startingInventorySystem.update(0);
+
+        assertEquals(Arrays.asList(10, 10, 5, 0), stackCounts(player, 4));
+        Mockito.verify(entityManager, times(3)).create(any(Prefab.class));
+    }
+
+    @Test
+    public void giveNestedItemsOnePerStack() {
+        createItemPrefab("test:chest", "", 1, new InventoryComponent(4));
+        EntityRef player = createPlayer(startingItem("test:chest", 2, startingItem("test:stone", 15)));
+        spawn(player);
+        startingInventorySystem.update(0);
+
+        assertEquals(Arrays.asList(1, 1, 0), stackCounts(player, 3));
+        EntityRef chest1 = InventoryUtils.getItemAt(player, 0);
+        EntityRef chest2 = InventoryUtils.getItemAt(player, 1);
+        assertNotSame(chest1, chest2);
+        assertNotSame(chest1.getComponent(InventoryComponent.class), chest2.getComponent(InventoryComponent.class));
+        assertEquals(Arrays.asList(10, 5, 0, 0), stackCounts(chest1, 4));
+        assertEquals(Arrays.asList(10, 5, 0, 0), stackCounts(chest2, 4));
     }
 
     @Test
@@ -57,4 +176,68 @@ public class StartingInventorySystemTest {
     public void giveStackableItemSplitStacks() {
         assertTrue(false, "Player inventory should contain a single item stack with combined amount.");
     }
+
+    private static List<Integer> stackCounts(EntityRef inventory, int slotCount) {
+        List<Integer> stackCounts = new ArrayList<>();
+        for (int slot = 0; slot < slotCount; slot++) {
+            stackCounts.add(InventoryUtils.getStackCount(InventoryUtils.getItemAt(inventory, slot)));
+        }
+        return stackCounts;
+    }
+
+    private void spawn(EntityRef player) {
+        startingInventorySystem.onStartingInventory(new OnPlayerSpawnedEvent(), player,
+                player.getComponent(StartingInventoryComponent.class));
+    }
+
+    /**
+     * @return a player whose {@link RequestInventoryEvent}s are handled by the system under test
+     */
+    private EntityRef createPlayer(InventoryItem... items) {
+        StartingInventoryComponent startingInventory = new StartingInventoryComponent();
+        Collections.addAll(startingInventory.items, items);
+        InventoryComponent inventory = new InventoryComponent(SLOT_COUNT);
+        Prefab playerPrefab = Mockito.mock(Prefab.class);
+        when(playerPrefab.getName()).thenReturn("test:player");
+
+        EntityRef player = Mockito.mock(EntityRef.class);
+        when(player.exists()).thenReturn(true);
+        when(player.getParentPrefab()).thenReturn(playerPrefab);
+        when(player.getComponent(StartingInventoryComponent.class)).thenReturn(startingInventory);
+        when(player.getComponent(InventoryComponent.class)).thenReturn(inventory);
+        when(player.hasComponent(InventoryComponent.class)).thenReturn(true);
+        when(player.send(any(RequestInventoryEvent.class))).then(invocation -> {
+            startingInventorySystem.onRequestInventory(invocation.getArgument(0), player);
+            return invocation.getArgument(0);
+        });
+        return player;
+    }
+
+    /**
+     * Create an item prefab the uri resolves to, whose instances are {@link InMemoryEntity}s with their own copy of the
+     * given components besides the {@link ItemComponent}.
+     */
+    private Prefab createItemPrefab(String uri, String stackId, int maxStackSize, Component... components) {
+        ItemComponent prefabItem = new ItemComponent();
+        prefabItem.stackId = stackId;
+        prefabItem.maxStackSize = (byte) maxStackSize;
+        Prefab prefab = Mockito.mock(Prefab.class);
+        when(prefab.getComponent(ItemComponent.class)).thenReturn(prefabItem);
+        when(prefab.iterateComponents()).thenReturn(Collections.<Component>singletonList(prefabItem));
+        when(itemUriResolver.resolveItemPrefab(uri)).thenReturn(Optional.of(prefab));
+        EntityRef archetype = new InMemoryEntity(prefabItem);
+        for (Component component : components) {
+            archetype.addComponent(component);
+        }
+        when(entityManager.create(prefab)).then(invocation -> archetype.copy());
+        return prefab;
+    }
+
+    private static InventoryItem startingItem(String uri, int quantity, InventoryItem... nestedItems) {
+        InventoryItem item = new InventoryItem();
+        item.uri = uri;
+        item.quantity = quantity;
+        Collections.addAll(item.items, nestedItems);
+        return item;
+    }
 }